@@ -0,0 +1,203 @@
+package org.webjars;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A filter of resource paths that spares creating a {@link java.util.regex.Matcher} per path where it can. The literal
+ * prefix and the literal suffixes a pattern requires are checked with plain string operations first, which rejects
+ * most paths of a scan. Patterns that consist of nothing but a prefix, a ".*" and suffixes, such as the ones built by
+ * {@link AssetFilters}, never need a matcher at all. Other patterns are matched as usual once these checks passed.
+ * Resource paths are expected not to contain line terminators. The class is immutable.
+ */
+final class AssetFilter {
+
+    private final Pattern pattern;
+    private final String prefix;
+    private final String[] suffixes;
+    /*
+     * Whether the pattern requires anything but a prefix and a suffix, in which case the matcher decides.
+     */
+    private final boolean matcherNeeded;
+    /*
+     * Whether the pattern allows anything between the prefix and the suffix, or nothing at all.
+     */
+    private final boolean wildcard;
+
+    private AssetFilter(final Pattern pattern, final String prefix, final String[] suffixes,
+                        final boolean matcherNeeded, final boolean wildcard) {
+        this.pattern = pattern;
+        this.prefix = prefix;
+        this.suffixes = suffixes;
+        this.matcherNeeded = matcherNeeded;
+        this.wildcard = wildcard;
+    }
+
+    /**
+     * @param filterExpr the regular expression to be used to filter resources.
+     * @return the filter.
+     */
+    static AssetFilter of(final Pattern filterExpr) {
+        final List<Object> tokens = filterExpr.flags() == 0 ? tokenize(filterExpr.pattern()) : null;
+        if (tokens == null) {
+            return new AssetFilter(filterExpr, "", new String[]{""}, true, true);
+        }
+
+        List<?> alternatives = Collections.singletonList("");
+        if (!tokens.isEmpty() && tokens.get(tokens.size() - 1) instanceof List) {
+            alternatives = (List<?>) tokens.remove(tokens.size() - 1);
+        }
+
+        int start = 0;
+        final StringBuilder prefix = new StringBuilder();
+        while (start < tokens.size() && tokens.get(start) instanceof String) {
+            prefix.append(tokens.get(start++));
+        }
+        int end = tokens.size();
+        final StringBuilder suffix = new StringBuilder();
+        while (end > start && tokens.get(end - 1) instanceof String) {
+            suffix.insert(0, tokens.get(--end));
+        }
+        final String[] suffixes = new String[alternatives.size()];
+        for (int i = 0; i < suffixes.length; ++i) {
+            suffixes[i] = suffix.toString() + alternatives.get(i);
+        }
+
+        final List<Object> middle = tokens.subList(start, end);
+        final boolean wildcard = !middle.isEmpty();
+        final boolean matcherNeeded = wildcard && !(middle.size() == 1 && middle.get(0) == Wildcard.ANY);
+        return new AssetFilter(filterExpr, prefix.toString(), suffixes, matcherNeeded, wildcard);
+    }
+
+    /**
+     * @param path the resource path.
+     * @return whether the path matches the whole pattern of the filter.
+     */
+    boolean accepts(final String path) {
+        if (!path.startsWith(prefix)) {
+            return false;
+        }
+        for (final String suffix : suffixes) {
+            final int length = prefix.length() + suffix.length();
+            if ((wildcard ? path.length() >= length : path.length() == length) && path.endsWith(suffix)) {
+                return !matcherNeeded || pattern.matcher(path).matches();
+            }
+        }
+        return false;
+    }
+
+    private enum Wildcard {
+        ANY(".*"), ANY_CHARACTER("."), ANY_IN_SEGMENT("[^/]*"), ANY_CHARACTER_IN_SEGMENT("[^/]");
+
+        final String expr;
+
+        Wildcard(final String expr) {
+            this.expr = expr;
+        }
+    }
+
+    /*
+     * Split a pattern into literal strings, wildcards, and a final group of literal alternatives, which is a list of
+     * strings. Return null if the pattern holds anything else.
+     */
+    private static List<Object> tokenize(final String pattern) {
+        final List<Object> tokens = new ArrayList<Object>();
+        int i = 0;
+        while (i < pattern.length()) {
+            final char c = pattern.charAt(i);
+            if (c == '.' || c == '[') {
+                final Wildcard wildcard = wildcard(pattern, i);
+                if (wildcard == null) {
+                    return null;
+                }
+                tokens.add(wildcard);
+                i += wildcard.expr.length();
+            } else if (c == '(') {
+                if (pattern.indexOf(')', i) != pattern.length() - 1) {
+                    return null;
+                }
+                final List<String> alternatives = alternatives(pattern.substring(i));
+                if (alternatives == null) {
+                    return null;
+                }
+                tokens.add(alternatives);
+                i = pattern.length();
+            } else {
+                i = literal(pattern, i, tokens);
+                if (i < 0) {
+                    return null;
+                }
+            }
+        }
+        return tokens;
+    }
+
+    private static Wildcard wildcard(final String pattern, final int i) {
+        // The longer expressions come first.
+        for (final Wildcard wildcard : new Wildcard[]{Wildcard.ANY, Wildcard.ANY_IN_SEGMENT,
+                Wildcard.ANY_CHARACTER_IN_SEGMENT, Wildcard.ANY_CHARACTER}) {
+            if (pattern.startsWith(wildcard.expr, i)) {
+                return wildcard;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Add the literal at the given index to the tokens and return the index that follows it, or -1 if there is no
+     * literal at the index. A quantifier that follows a literal is no literal itself, so it makes the caller give up.
+     */
+    private static int literal(final String pattern, final int i, final List<Object> tokens) {
+        final char c = pattern.charAt(i);
+        if (c == '\\') {
+            if (i + 1 == pattern.length()) {
+                return -1;
+            }
+            final char escaped = pattern.charAt(i + 1);
+            if (escaped == 'Q') {
+                final int end = pattern.indexOf("\\E", i + 2);
+                tokens.add(pattern.substring(i + 2, end < 0 ? pattern.length() : end));
+                return end < 0 ? pattern.length() : end + 2;
+            }
+            if (Character.isLetterOrDigit(escaped)) {
+                return -1;
+            }
+            tokens.add(String.valueOf(escaped));
+            return i + 2;
+        }
+        if ("^$|?*+{}[]().".indexOf(c) >= 0) {
+            return -1;
+        }
+        tokens.add(String.valueOf(c));
+        return i + 1;
+    }
+
+    /*
+     * Return the literal alternatives of a group such as "(js|css)" or "(?:js|css)", or null if it holds anything else.
+     */
+    private static List<String> alternatives(final String group) {
+        final String body = group.substring(group.startsWith("(?:") ? 3 : 1, group.length() - 1);
+        final List<String> alternatives = new ArrayList<String>();
+        final List<Object> tokens = new ArrayList<Object>();
+        int i = 0;
+        while (i <= body.length()) {
+            if (i == body.length() || body.charAt(i) == '|') {
+                final StringBuilder alternative = new StringBuilder();
+                for (final Object token : tokens) {
+                    alternative.append(token);
+                }
+                alternatives.add(alternative.toString());
+                tokens.clear();
+                ++i;
+            } else {
+                i = literal(body, i, tokens);
+                if (i < 0) {
+                    return null;
+                }
+            }
+        }
+        return alternatives;
+    }
+}
@@ -0,0 +1,74 @@
+package org.webjars;
+
+import java.util.regex.Pattern;
+
+/**
+ * Builds the filters that locators take for the common cases, so that they don't need to be written as regular
+ * expressions. Filters built by {@link #prefix(String)} and {@link #suffixes(String...)} are recognized when scanning
+ * and checked without running the regular expression at all. The same goes for regular expressions of the form
+ * "&lt;literal prefix&gt;.*&lt;literal suffix&gt;" or "&lt;literal prefix&gt;.*\.(js|css)".
+ */
+public final class AssetFilters {
+
+    private AssetFilters() {
+    }
+
+    /**
+     * @param prefix the prefix of the full paths to include, such as "META-INF/resources/webjars/jquery/".
+     * @return the filter.
+     */
+    public static Pattern prefix(final String prefix) {
+        return Pattern.compile(Pattern.quote(prefix) + ".*");
+    }
+
+    /**
+     * @param suffixes the suffixes of the full paths to include, such as ".js" and ".css".
+     * @return the filter.
+     */
+    public static Pattern suffixes(final String... suffixes) {
+        final StringBuilder expr = new StringBuilder(".*(?:");
+        for (int i = 0; i < suffixes.length; ++i) {
+            if (i > 0) {
+                expr.append('|');
+            }
+            expr.append(Pattern.quote(suffixes[i]));
+        }
+        return Pattern.compile(expr.append(')').toString());
+    }
+
+    /**
+     * Build a filter from a glob of full paths, in which "**" stands for any number of characters, "*" for any number
+     * of characters within a path segment and "?" for a single character within a path segment. For instance,
+     * "META-INF/resources/webjars/**&#47;*.js" includes the JavaScript files of all WebJars.
+     *
+     * @param glob the glob.
+     * @return the filter.
+     */
+    public static Pattern glob(final String glob) {
+        final StringBuilder expr = new StringBuilder();
+        final StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < glob.length(); ++i) {
+            final char c = glob.charAt(i);
+            if (c == '*' || c == '?') {
+                if (literal.length() > 0) {
+                    expr.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                if (c == '?') {
+                    expr.append("[^/]");
+                } else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                    expr.append(".*");
+                    ++i;
+                } else {
+                    expr.append("[^/]*");
+                }
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            expr.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(expr.toString());
+    }
+}
@@ -0,0 +1,374 @@
+package org.webjars;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+import static org.webjars.WebJarAssetLocator.WEBJARS_PATH_PREFIX;
+
+/**
+ * The immutable index of a {@link WebJarAssetLocator}. Partial paths are looked up in an {@link AssetPathTrie} of the
+ * asset paths, while folders are listed from the same asset paths sorted in their natural order, so that the assets
+ * within a folder form a contiguous range. Both share the asset path strings.
+ *
+ * The index is also partitioned by WebJar, as found in the
+ * {@value WebJarAssetLocator#WEBJARS_PATH_PREFIX}/&lt;name&gt;/&lt;version&gt;/ layout, so that the assets of a
+ * WebJar can be listed without looking at the others. Lookups scoped to a WebJar walk the same trie as any other
+ * lookup, but only consider the asset paths of the WebJar among the ones matching, so that no trie is built per
+ * WebJar. Assets below the directory of a WebJar that don't follow the
+ * layout, such as &lt;name&gt;/readme.txt, belong to the WebJar as well. Assets directly in
+ * {@value WebJarAssetLocator#WEBJARS_PATH_PREFIX} belong to none.
+ *
+ * An index can optionally remember recent misses. Changes to the index are made by creating a new index that shares
+ * as much as possible with the current one, see {@link #with(Collection, Collection)}. The class is thread safe.
+ */
+final class AssetIndex {
+
+    private static final String WEBJARS_PATH = WEBJARS_PATH_PREFIX + "/";
+
+    private final AssetPathTrie trie;
+    private final String[] assetPaths;
+    private final Map<String, WebJar> webJars;
+    private final int missCacheSize;
+    final MissCache missCache;
+
+    private AssetIndex(final AssetPathTrie trie, final String[] assetPaths, final int missCacheSize) {
+        this(trie, assetPaths, partition(assetPaths), missCacheSize);
+    }
+
+    private AssetIndex(final AssetPathTrie trie, final String[] assetPaths, final Map<String, WebJar> webJars,
+                       final int missCacheSize) {
+        this.trie = trie;
+        this.assetPaths = assetPaths;
+        this.webJars = webJars;
+        this.missCacheSize = missCacheSize;
+        this.missCache = missCacheSize > 0 ? new MissCache(missCacheSize) : null;
+    }
+
+    /*
+     * The asset paths of a WebJar are contiguous in the sorted asset paths, as they share the same prefix.
+     */
+    private static Map<String, WebJar> partition(final String[] assetPaths) {
+        final Map<String, WebJar> webJars = new HashMap<String, WebJar>();
+        int i = 0;
+        while (i < assetPaths.length) {
+            final String name = webJarDirectory(assetPaths[i]);
+            if (name == null) {
+                ++i;
+                continue;
+            }
+            final String prefix = WEBJARS_PATH + name + "/";
+            final int from = i;
+            while (i < assetPaths.length && assetPaths[i].startsWith(prefix)) {
+                ++i;
+            }
+            webJars.put(name, new WebJar(prefix, assetPaths, from, i));
+        }
+        return webJars;
+    }
+
+    /*
+     * Return the name of the WebJar directory of a <prefix>/<name>/<path> asset path, whatever the layout below it,
+     * or null if the asset path has fewer than two segments below the prefix.
+     */
+    private static String webJarDirectory(final String assetPath) {
+        if (!assetPath.startsWith(WEBJARS_PATH)) {
+            return null;
+        }
+        final int nameEnd = assetPath.indexOf('/', WEBJARS_PATH.length());
+        if (nameEnd <= WEBJARS_PATH.length()) {
+            return null;
+        }
+        return assetPath.substring(WEBJARS_PATH.length(), nameEnd);
+    }
+
+    /*
+     * Return the name of the WebJar of a <prefix>/<name>/<version>/<path> asset path, or
+     * null if the asset path has a different layout.
+     */
+    static String webJarName(final String assetPath) {
+        if (!assetPath.startsWith(WEBJARS_PATH)) {
+            return null;
+        }
+        final int nameEnd = assetPath.indexOf('/', WEBJARS_PATH.length());
+        if (nameEnd <= WEBJARS_PATH.length()) {
+            return null;
+        }
+        final int versionEnd = assetPath.indexOf('/', nameEnd + 1);
+        if (versionEnd <= nameEnd + 1) {
+            return null;
+        }
+        return assetPath.substring(WEBJARS_PATH.length(), nameEnd);
+    }
+
+    /**
+     * @param assetPaths the distinct asset paths to index.
+     * @return the index.
+     */
+    static AssetIndex of(final Collection<String> assetPaths) {
+        return of(assetPaths, 0);
+    }
+
+    /**
+     * @param assetPaths    the distinct asset paths to index.
+     * @param missCacheSize the number of misses to remember, or 0 to not remember any.
+     * @return the index.
+     */
+    static AssetIndex of(final Collection<String> assetPaths, final int missCacheSize) {
+        final String[] sortedAssetPaths = assetPaths.toArray(new String[assetPaths.size()]);
+        Arrays.sort(sortedAssetPaths);
+        return new AssetIndex(AssetPathTrie.of(Arrays.asList(sortedAssetPaths)), sortedAssetPaths, missCacheSize);
+    }
+
+    /**
+     * Builds an index from asset paths as they are found. They are collected, and sorted and deduplicated once all of
+     * them are there, so that the trie is built in one go. The class is not thread safe.
+     */
+    static final class Builder implements Consumer<String> {
+        private final List<String> assetPaths = new ArrayList<String>();
+
+        @Override
+        public void accept(final String assetPath) {
+            assetPaths.add(assetPath);
+        }
+
+        /**
+         * @return the index of the asset paths added so far.
+         */
+        AssetIndex build() {
+            final String[] sorted = assetPaths.toArray(new String[assetPaths.size()]);
+            Arrays.sort(sorted);
+            int distinct = 0;
+            for (final String assetPath : sorted) {
+                if (distinct == 0 || !assetPath.equals(sorted[distinct - 1])) {
+                    sorted[distinct++] = assetPath;
+                }
+            }
+            final String[] sortedAssetPaths = distinct == sorted.length ? sorted : Arrays.copyOf(sorted, distinct);
+            return new AssetIndex(AssetPathTrie.of(Arrays.asList(sortedAssetPaths)), sortedAssetPaths, 0);
+        }
+    }
+
+    /**
+     * Return an index of the asset paths of the given index, with the same miss cache size as this index. The asset
+     * paths and the trie are shared with the given index, the misses remembered by this index are not carried over.
+     *
+     * @param index the index to take the asset paths of.
+     * @return the given index, if it has the same miss cache size, or a new index.
+     */
+    AssetIndex reindexed(final AssetIndex index) {
+        return index.withMissCacheSize(missCacheSize);
+    }
+
+    /**
+     * Return an index of the same asset paths that remembers up to the given number of misses. Everything but the
+     * miss cache is shared with this index, so an index shared by several locators can be given a miss cache of each
+     * locator's own.
+     *
+     * @param missCacheSize the number of misses to remember, or 0 to not remember any.
+     * @return this index, if it has the given miss cache size, or a new index.
+     */
+    AssetIndex withMissCacheSize(final int missCacheSize) {
+        return missCacheSize == this.missCacheSize ? this : new AssetIndex(trie, assetPaths, webJars, missCacheSize);
+    }
+
+    /**
+     * Return an index with the given asset paths added and removed. This index is left untouched. Adding an asset
+     * path that is already present or removing one that isn't has no effect.
+     *
+     * @param added   the asset paths to add.
+     * @param removed the asset paths to remove.
+     * @return the new index, or this index if nothing changed.
+     */
+    AssetIndex with(final Collection<String> added, final Collection<String> removed) {
+        final SortedSet<String> toAdd = new TreeSet<String>();
+        for (final String assetPath : added) {
+            if (Arrays.binarySearch(assetPaths, assetPath) < 0) {
+                toAdd.add(assetPath);
+            }
+        }
+        final Set<String> toRemove = new HashSet<String>();
+        for (final String assetPath : removed) {
+            if (!toAdd.remove(assetPath) && Arrays.binarySearch(assetPaths, assetPath) >= 0) {
+                toRemove.add(assetPath);
+            }
+        }
+        if (toAdd.isEmpty() && toRemove.isEmpty()) {
+            return this;
+        }
+
+        AssetPathTrie trie = this.trie;
+        for (final String assetPath : toAdd) {
+            trie = trie.with(assetPath);
+        }
+        for (final String assetPath : toRemove) {
+            trie = trie.without(assetPath);
+        }
+
+        // Merge the sorted asset paths to add into the remaining ones.
+        final String[] merged = new String[assetPaths.length + toAdd.size() - toRemove.size()];
+        final Iterator<String> toAddIter = toAdd.iterator();
+        String next = toAddIter.hasNext() ? toAddIter.next() : null;
+        int i = 0;
+        for (final String assetPath : assetPaths) {
+            if (toRemove.contains(assetPath)) {
+                continue;
+            }
+            while (next != null && next.compareTo(assetPath) < 0) {
+                merged[i++] = next;
+                next = toAddIter.hasNext() ? toAddIter.next() : null;
+            }
+            merged[i++] = assetPath;
+        }
+        while (next != null) {
+            merged[i++] = next;
+            next = toAddIter.hasNext() ? toAddIter.next() : null;
+        }
+        return new AssetIndex(trie, merged, missCacheSize);
+    }
+
+    /**
+     * @see AssetPathTrie#find(String)
+     */
+    String find(final String partialPath) {
+        if (missCache != null && missCache.contains(partialPath)) {
+            return null;
+        }
+        final String fullPath = trie.find(partialPath);
+        if (fullPath == null && missCache != null) {
+            missCache.add(partialPath);
+        }
+        return fullPath;
+    }
+
+    /**
+     * Same as {@link #find(String)}, but only considers the assets of the given WebJar.
+     *
+     * @param webJar      the name of the WebJar.
+     * @param partialPath the partial path to match.
+     * @return the matching asset path, null if there is none or {@link AssetPathTrie#MULTIPLE_MATCHES} if there are
+     *         several.
+     */
+    String find(final String webJar, final String partialPath) {
+        final WebJar partition = webJars.get(webJar);
+        return partition == null ? null : trie.find(partialPath, partition.prefix);
+    }
+
+    /**
+     * @param webJar the name of the WebJar.
+     * @return an immutable view of the asset paths of all versions of the WebJar, sorted.
+     */
+    Set<String> webJarAssetPaths(final String webJar) {
+        final WebJar partition = webJars.get(webJar);
+        return partition == null ? Collections.<String>emptySet() : partition.assetPaths;
+    }
+
+    /**
+     * @param assetPath the asset path.
+     * @return whether the index holds the asset path.
+     */
+    boolean contains(final String assetPath) {
+        return Arrays.binarySearch(assetPaths, assetPath) >= 0;
+    }
+
+    /**
+     * @return all of the asset paths, sorted.
+     */
+    List<String> assetPaths() {
+        return Collections.unmodifiableList(Arrays.asList(assetPaths));
+    }
+
+    /**
+     * Return the asset paths starting with the given prefix. The cost is proportional to the log of the size of the
+     * index plus the number of asset paths returned.
+     *
+     * @param prefix the prefix.
+     * @return an immutable view of the matching asset paths, sorted.
+     */
+    Set<String> startingWith(final String prefix) {
+        int from = Arrays.binarySearch(assetPaths, prefix);
+        if (from < 0) {
+            from = -(from + 1);
+        }
+        int to = from;
+        while (to < assetPaths.length && assetPaths[to].startsWith(prefix)) {
+            ++to;
+        }
+        return new Range(assetPaths, from, to);
+    }
+
+    /*
+     * The assets of all versions of a WebJar, which all start with its prefix.
+     */
+    private static final class WebJar {
+        private final String prefix;
+        private final Range assetPaths;
+
+        WebJar(final String prefix, final String[] assetPaths, final int from, final int to) {
+            this.prefix = prefix;
+            this.assetPaths = new Range(assetPaths, from, to);
+        }
+    }
+
+    /*
+     * A set of the sorted asset paths in `assetPaths[from, to)`.
+     */
+    private static final class Range extends AbstractSet<String> {
+        private final String[] assetPaths;
+        private final int from;
+        private final int to;
+
+        Range(final String[] assetPaths, final int from, final int to) {
+            this.assetPaths = assetPaths;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            return o instanceof String && Arrays.binarySearch(assetPaths, from, to, o) >= 0;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+                private int next = from;
+
+                @Override
+                public boolean hasNext() {
+                    return next < to;
+                }
+
+                @Override
+                public String next() {
+                    if (next >= to) {
+                        throw new NoSuchElementException();
+                    }
+                    return assetPaths[next++];
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}
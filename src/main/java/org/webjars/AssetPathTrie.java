@@ -0,0 +1,478 @@
+package org.webjars;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable radix trie of asset paths keyed by their path segments in reverse order, so that the asset paths
+ * ending with a given partial path share a subtree. "a/b/c" is found by walking "c", then "b", then "a".
+ *
+ * Every node knows how many asset paths its subtree holds, which is all it takes to tell a unique match from an
+ * ambiguous one. A subtree that holds a single asset path is collapsed into a leaf that only keeps the asset path
+ * itself; its remaining segments are compared against the asset path directly. Segment strings are shared between
+ * all nodes, so common segments such as "META-INF", "resources", "webjars", WebJar names and versions are only kept
+ * once. The class is thread safe.
+ */
+final class AssetPathTrie {
+
+    /**
+     * Returned by {@link #find(String)} if more than one asset path matches. Compare by identity.
+     */
+    static final String MULTIPLE_MATCHES = new String("<multiple matches>");
+
+    private static final Node EMPTY = new Branch(0, new String[0], new Node[0], null);
+
+    private final Node root;
+
+    private AssetPathTrie(final Node root) {
+        this.root = root;
+    }
+
+    /*
+     * Orders asset paths by their segments in reverse order, so that the asset paths below each node of the trie are
+     * contiguous, in the order of the segments leading to them. An asset path that ends at a node comes first.
+     */
+    private static final Comparator<String> REVERSED_SEGMENTS = new Comparator<String>() {
+        @Override
+        public int compare(final String assetPath1, final String assetPath2) {
+            int end1 = assetPath1.length();
+            int end2 = assetPath2.length();
+            while (end1 >= 0 && end2 >= 0) {
+                final int separator1 = assetPath1.lastIndexOf('/', end1 - 1);
+                final int separator2 = assetPath2.lastIndexOf('/', end2 - 1);
+                final int comparison = AssetPathTrie.compare(assetPath1, separator1 + 1, end1, assetPath2,
+                        separator2 + 1, end2);
+                if (comparison != 0) {
+                    return comparison;
+                }
+                end1 = separator1;
+                end2 = separator2;
+            }
+            return end1 < 0 ? (end2 < 0 ? 0 : -1) : 1;
+        }
+    };
+
+    /**
+     * Build a trie of the given asset paths. They are sorted by their reversed segments first, so that each node is
+     * built once with all of its children, without any intermediate structure. Duplicates are dropped.
+     *
+     * @param assetPaths the asset paths to index.
+     * @return the trie.
+     */
+    static AssetPathTrie of(final Collection<String> assetPaths) {
+        final String[] sorted = assetPaths.toArray(new String[assetPaths.size()]);
+        Arrays.sort(sorted, REVERSED_SEGMENTS);
+        int distinct = 0;
+        for (final String assetPath : sorted) {
+            if (distinct == 0 || !assetPath.equals(sorted[distinct - 1])) {
+                sorted[distinct++] = assetPath;
+            }
+        }
+        return new AssetPathTrie(distinct == 0 ? EMPTY : build(sorted, 0, distinct, 0, new HashMap<String, String>()));
+    }
+
+    /*
+     * Build the node of the sorted, distinct asset paths `assetPaths[from, to)`, which share their last segments up to
+     * the given length, including the separators.
+     */
+    private static Node build(final String[] assetPaths, int from, final int to, final int matched,
+                              final Map<String, String> segments) {
+        if (to - from == 1) {
+            return new Leaf(assetPaths[from]);
+        }
+        final int count = to - from;
+        final String assetPath = assetPaths[from].length() < matched ? assetPaths[from++] : null;
+
+        int childCount = 0;
+        for (int i = from; i < to; i = next(assetPaths, i, to, matched)) {
+            ++childCount;
+        }
+        final String[] childSegments = new String[childCount];
+        final Node[] children = new Node[childCount];
+        int child = 0;
+        for (int i = from; i < to; ++child) {
+            final int next = next(assetPaths, i, to, matched);
+            final int end = assetPaths[i].length() - matched;
+            final int separator = assetPaths[i].lastIndexOf('/', end - 1);
+            childSegments[child] = intern(assetPaths[i].substring(separator + 1, end), segments);
+            children[child] = build(assetPaths, i, next, matched + end - separator, segments);
+            i = next;
+        }
+        return new Branch(count, childSegments, children, assetPath);
+    }
+
+    /*
+     * Return the index of the first asset path after `assetPaths[from]` with another segment at the given position.
+     */
+    private static int next(final String[] assetPaths, final int from, final int to, final int matched) {
+        final int end = assetPaths[from].length() - matched;
+        final int start = assetPaths[from].lastIndexOf('/', end - 1) + 1;
+        int next = from + 1;
+        while (next < to) {
+            final String assetPath = assetPaths[next];
+            final int nextEnd = assetPath.length() - matched;
+            if (nextEnd - assetPath.lastIndexOf('/', nextEnd - 1) - 1 != end - start
+                    || !assetPath.regionMatches(nextEnd - (end - start), assetPaths[from], start, end - start)) {
+                break;
+            }
+            ++next;
+        }
+        return next;
+    }
+
+    private static String intern(final String segment, final Map<String, String> segments) {
+        final String interned = segments.get(segment);
+        if (interned != null) {
+            return interned;
+        }
+        segments.put(segment, segment);
+        return segment;
+    }
+
+    /**
+     * Return a trie that holds the given asset path as well. This trie is left untouched: only the nodes on the way to
+     * the asset path are copied, all of the others are shared with the returned trie.
+     *
+     * @param assetPath the asset path to add.
+     * @return the new trie, or this trie if it already holds the asset path.
+     */
+    AssetPathTrie with(final String assetPath) {
+        final Node root = add(this.root, assetPath, assetPath.length());
+        return root == this.root ? this : new AssetPathTrie(root);
+    }
+
+    /**
+     * Return a trie without the given asset path, the same way as {@link #with(String)}.
+     *
+     * @param assetPath the asset path to remove.
+     * @return the new trie, or this trie if it doesn't hold the asset path.
+     */
+    AssetPathTrie without(final String assetPath) {
+        final Node root = remove(this.root, assetPath, assetPath.length());
+        return root == this.root ? this : new AssetPathTrie(root == null ? EMPTY : root);
+    }
+
+    /*
+     * Add the asset path below the node, of which the segments up to `end` have not been matched yet. Returns the
+     * node itself if it already holds the asset path.
+     */
+    private static Node add(final Node node, final String assetPath, final int end) {
+        if (node instanceof Leaf) {
+            final String leafAssetPath = ((Leaf) node).assetPath;
+            if (leafAssetPath.equals(assetPath)) {
+                return node;
+            }
+            // Both asset paths share the segments matched so far, so the leaf is expanded from the same point.
+            final String[] assetPaths = {leafAssetPath, assetPath};
+            Arrays.sort(assetPaths, REVERSED_SEGMENTS);
+            return build(assetPaths, 0, 2, assetPath.length() - end, new HashMap<String, String>());
+        }
+
+        final Branch branch = (Branch) node;
+        if (end < 0) {
+            return branch.assetPath != null ? node
+                    : new Branch(branch.count + 1, branch.segments, branch.children, assetPath);
+        }
+        final int separator = assetPath.lastIndexOf('/', end - 1);
+        final int index = binarySearch(branch.segments, assetPath, separator + 1, end);
+        if (index < 0) {
+            final int insertion = -(index + 1);
+            return new Branch(branch.count + 1,
+                    insert(branch.segments, new String[branch.segments.length + 1], insertion, assetPath.substring(separator + 1, end)),
+                    insert(branch.children, new Node[branch.children.length + 1], insertion, new Leaf(assetPath)),
+                    branch.assetPath);
+        }
+        final Node child = add(branch.children[index], assetPath, separator);
+        if (child == branch.children[index]) {
+            return node;
+        }
+        final Node[] children = branch.children.clone();
+        children[index] = child;
+        return new Branch(branch.count + 1, branch.segments, children, branch.assetPath);
+    }
+
+    /*
+     * Remove the asset path below the node, the same way as it is added. Returns the node itself if it doesn't hold
+     * the asset path, or null if nothing is left of the node.
+     */
+    private static Node remove(final Node node, final String assetPath, final int end) {
+        if (node instanceof Leaf) {
+            return ((Leaf) node).assetPath.equals(assetPath) ? null : node;
+        }
+
+        final Branch branch = (Branch) node;
+        final Branch removed;
+        if (end < 0) {
+            if (!assetPath.equals(branch.assetPath)) {
+                return node;
+            }
+            removed = new Branch(branch.count - 1, branch.segments, branch.children, null);
+        } else {
+            final int separator = assetPath.lastIndexOf('/', end - 1);
+            final int index = binarySearch(branch.segments, assetPath, separator + 1, end);
+            if (index < 0) {
+                return node;
+            }
+            final Node child = remove(branch.children[index], assetPath, separator);
+            if (child == branch.children[index]) {
+                return node;
+            } else if (child == null) {
+                removed = new Branch(branch.count - 1,
+                        delete(branch.segments, new String[branch.segments.length - 1], index),
+                        delete(branch.children, new Node[branch.children.length - 1], index),
+                        branch.assetPath);
+            } else {
+                final Node[] children = branch.children.clone();
+                children[index] = child;
+                removed = new Branch(branch.count - 1, branch.segments, children, branch.assetPath);
+            }
+        }
+
+        // Keep subtrees of a single asset path collapsed into a leaf.
+        if (removed.count == 0) {
+            return null;
+        } else if (removed.count == 1) {
+            return new Leaf(removed.assetPath != null ? removed.assetPath : ((Leaf) removed.children[0]).assetPath);
+        }
+        return removed;
+    }
+
+    private static <T> T[] insert(final T[] source, final T[] target, final int index, final T element) {
+        System.arraycopy(source, 0, target, 0, index);
+        target[index] = element;
+        System.arraycopy(source, index, target, index + 1, source.length - index);
+        return target;
+    }
+
+    private static <T> T[] delete(final T[] source, final T[] target, final int index) {
+        System.arraycopy(source, 0, target, 0, index);
+        System.arraycopy(source, index + 1, target, index, source.length - index - 1);
+        return target;
+    }
+
+    /**
+     * @return the number of asset paths in the trie.
+     */
+    int size() {
+        return root.count;
+    }
+
+    /**
+     * @return all of the asset paths in the trie, in no particular order.
+     */
+    List<String> assetPaths() {
+        final List<String> assetPaths = new ArrayList<String>(root.count);
+        root.addTo(assetPaths);
+        return assetPaths;
+    }
+
+    /**
+     * Find the asset path ending with the given partial path, that has at least one more segment in front of it.
+     * "b/c" and "/b/c" match "a/b/c", but neither "b/c" nor "ab/c". Trailing slashes are ignored.
+     *
+     * The partial path is matched in place from its end, so a successful lookup allocates nothing.
+     *
+     * @param partialPath the partial path to match.
+     * @return the matching asset path, null if there is none or {@link #MULTIPLE_MATCHES} if there are several.
+     */
+    String find(final String partialPath) {
+        return find(partialPath, null);
+    }
+
+    /**
+     * Same as {@link #find(String)}, but only considers the asset paths starting with the given prefix. The trie is
+     * walked the same way, and only the asset paths ending with the partial path are then checked for the prefix.
+     *
+     * @param partialPath the partial path to match.
+     * @param prefix      the prefix of the asset paths to consider, or null to consider all of them.
+     * @return the matching asset path, null if there is none or {@link #MULTIPLE_MATCHES} if there are several.
+     */
+    String find(final String partialPath, final String prefix) {
+        final int begin = partialPath.startsWith("/") ? 1 : 0;
+        int end = partialPath.length();
+        while (end > 0 && partialPath.charAt(end - 1) == '/') {
+            --end;
+        }
+
+        Node node = root;
+        int matchedLength = 0;
+        while (end >= begin && end > 0) {
+            final int separator = partialPath.lastIndexOf('/', end - 1);
+            final int start = separator >= begin ? separator + 1 : begin;
+            final int length = end - start;
+            if (node instanceof Branch) {
+                final Branch branch = (Branch) node;
+                final int index = binarySearch(branch.segments, partialPath, start, end);
+                if (index < 0) {
+                    return null;
+                }
+                node = branch.children[index];
+            } else {
+                final String assetPath = ((Leaf) node).assetPath;
+                final int assetStart = assetPath.length() - matchedLength - length;
+                if (assetStart < 0 || !assetPath.regionMatches(assetStart, partialPath, start, length)
+                        || (assetStart > 0 && assetPath.charAt(assetStart - 1) != '/')) {
+                    return null;
+                }
+            }
+            // Every matched segment accounts for the separator in front of it.
+            matchedLength += length + 1;
+            if (separator < begin) {
+                break;
+            }
+            end = separator;
+        }
+
+        if (node instanceof Leaf) {
+            final String assetPath = ((Leaf) node).assetPath;
+            return assetPath.length() > matchedLength && (prefix == null || assetPath.startsWith(prefix))
+                    ? assetPath : null;
+        }
+        final Branch branch = (Branch) node;
+        if (prefix != null) {
+            // The counts don't tell how many of the asset paths have the prefix, so they are looked at one by one.
+            String found = null;
+            for (final Node child : branch.children) {
+                found = find(child, prefix, found);
+                if (found == MULTIPLE_MATCHES) {
+                    break;
+                }
+            }
+            return found;
+        }
+        final int count = branch.assetPath == null ? branch.count : branch.count - 1;
+        if (count == 0) {
+            return null;
+        } else if (count > 1) {
+            return MULTIPLE_MATCHES;
+        }
+        // A single asset path below a branch is always a leaf of its own.
+        for (final Node child : branch.children) {
+            if (child.count > 0) {
+                return ((Leaf) child).assetPath;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Return the asset path below the node that starts with the prefix, given the one found so far, stopping at the
+     * second one.
+     */
+    private static String find(final Node node, final String prefix, String found) {
+        if (node instanceof Leaf) {
+            final String assetPath = ((Leaf) node).assetPath;
+            return !assetPath.startsWith(prefix) ? found : found == null ? assetPath : MULTIPLE_MATCHES;
+        }
+        final Branch branch = (Branch) node;
+        if (branch.assetPath != null && branch.assetPath.startsWith(prefix)) {
+            found = found == null ? branch.assetPath : MULTIPLE_MATCHES;
+        }
+        for (int i = 0; i < branch.children.length && found != MULTIPLE_MATCHES; ++i) {
+            found = find(branch.children[i], prefix, found);
+        }
+        return found;
+    }
+
+    /*
+     * Arrays.binarySearch for the segment `path[start, end)`, without creating a string for it.
+     */
+    private static int binarySearch(final String[] segments, final String path, final int start, final int end) {
+        int low = 0;
+        int high = segments.length - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int comparison = compare(segments[middle], path, start, end);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /*
+     * String.compareTo for the segment `path[start, end)`.
+     */
+    private static int compare(final String segment, final String path, final int start, final int end) {
+        return compare(segment, 0, segment.length(), path, start, end);
+    }
+
+    /*
+     * String.compareTo for the segments `path1[start1, end1)` and `path2[start2, end2)`.
+     */
+    private static int compare(final String path1, final int start1, final int end1,
+                               final String path2, final int start2, final int end2) {
+        final int length = Math.min(end1 - start1, end2 - start2);
+        for (int i = 0; i < length; ++i) {
+            final char c1 = path1.charAt(start1 + i);
+            final char c2 = path2.charAt(start2 + i);
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        return (end1 - start1) - (end2 - start2);
+    }
+
+    private abstract static class Node {
+        final int count;
+
+        Node(final int count) {
+            this.count = count;
+        }
+
+        abstract void addTo(Collection<String> assetPaths);
+    }
+
+    private static final class Leaf extends Node {
+        final String assetPath;
+
+        Leaf(final String assetPath) {
+            super(1);
+            this.assetPath = assetPath;
+        }
+
+        @Override
+        void addTo(final Collection<String> assetPaths) {
+            assetPaths.add(assetPath);
+        }
+    }
+
+    private static final class Branch extends Node {
+        /*
+         * The sorted segments leading to the children, and the children in the same order.
+         */
+        final String[] segments;
+        final Node[] children;
+        /*
+         * The asset path that ends at this node, if any.
+         */
+        final String assetPath;
+
+        Branch(final int count, final String[] segments, final Node[] children, final String assetPath) {
+            super(count);
+            this.segments = segments;
+            this.children = children;
+            this.assetPath = assetPath;
+        }
+
+        @Override
+        void addTo(final Collection<String> assetPaths) {
+            if (assetPath != null) {
+                assetPaths.add(assetPath);
+            }
+            for (final Node child : children) {
+                child.addTo(assetPaths);
+            }
+        }
+    }
+
+}
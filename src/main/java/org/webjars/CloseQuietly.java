@@ -5,7 +5,6 @@ import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.util.jar.JarFile;
 
 /**
  * Utility for closing resources without throwing an exception (because you should never throw an exception from a
@@ -23,14 +22,4 @@ public class CloseQuietly {
 			}
 		}
 	}
-
-	static void closeQuietly(JarFile closeable) {
-		if (closeable != null) {
-			try {
-				closeable.close();
-			} catch (IOException e) {
-				log.debug("Exception while closing resource", e);
-			}
-		}
-	}
 }
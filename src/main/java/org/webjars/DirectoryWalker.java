@@ -0,0 +1,224 @@
+package org.webjars;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+/**
+ * Finds the files below a directory, following symbolic links. The attributes read while listing a directory are
+ * used to tell files from directories, so that no file is looked up twice. Links that lead back to a directory
+ * being walked are skipped, and so are directories beyond the maximum depth, which is logged at debug level.
+ *
+ * When walking from a task of a {@link java.util.concurrent.ForkJoinPool}, each subdirectory is walked by a task of
+ * its own, so that large trees are split across the pool. The files are passed on once all of them have been found,
+ * on the calling thread. Otherwise, the directory is walked on the calling thread, and each file is passed on as it
+ * is found.
+ */
+final class DirectoryWalker {
+
+    private static final Logger log = LoggerFactory.getLogger(DirectoryWalker.class);
+
+    private static final EnumSet<FileVisitOption> FOLLOW_LINKS = EnumSet.of(FileVisitOption.FOLLOW_LINKS);
+
+    private final int maxDepth;
+
+    /**
+     * @param maxDepth the number of levels below the directory to find files in. Files in the directory itself are
+     *                 on the first level, files in its subdirectories on the second one and so on.
+     */
+    DirectoryWalker(final int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * @param directory the directory to walk.
+     * @param files     the consumer of the regular files found.
+     */
+    void walk(final Path directory, final Consumer<Path> files) {
+        try {
+            if (ForkJoinTask.inForkJoinPool()) {
+                final Ancestor root = new Ancestor(directory,
+                        Files.readAttributes(directory, BasicFileAttributes.class), null);
+                for (final Path file : new Walk(directory, 0, root).invoke()) {
+                    files.accept(file);
+                }
+            } else {
+                Files.walkFileTree(directory, FOLLOW_LINKS, maxDepth, new Visitor(files));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Return a value that changes whenever a file or directory below the directory is added, deleted or renamed, as
+     * told by the names of the files and the modification times of the directories. No file is opened.
+     *
+     * @param directory the directory to walk.
+     * @return the fingerprint of the directory.
+     */
+    long fingerprint(final Path directory) {
+        final Fingerprint fingerprint = new Fingerprint();
+        try {
+            Files.walkFileTree(directory, FOLLOW_LINKS, maxDepth, fingerprint);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return fingerprint.value;
+    }
+
+    /*
+     * Sums up the hashes of the paths found and the modification times of the directories, so that the order the
+     * entries of a directory are listed in doesn't matter.
+     */
+    private static final class Fingerprint extends SimpleFileVisitor<Path> {
+        private long value;
+
+        @Override
+        public FileVisitResult preVisitDirectory(final Path directory, final BasicFileAttributes attributes) {
+            value += directory.hashCode() * 0x9E3779B97F4A7C15L ^ attributes.lastModifiedTime().toMillis();
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) {
+            value += file.hashCode();
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+            // A link back to a directory being walked, or a file deleted meanwhile, which changes the fingerprint.
+            value += file.hashCode();
+            return FileVisitResult.CONTINUE;
+        }
+    }
+
+    /*
+     * A directory being walked, linked to the one it was found in.
+     */
+    private static final class Ancestor {
+        private final Path directory;
+        private final Object key;
+        private final Ancestor parent;
+
+        Ancestor(final Path directory, final BasicFileAttributes attributes, final Ancestor parent) {
+            this.directory = directory;
+            this.key = attributes.fileKey();
+            this.parent = parent;
+        }
+
+        static boolean contains(Ancestor ancestor, final Path directory, final BasicFileAttributes attributes)
+                throws IOException {
+            final Object key = attributes.fileKey();
+            for (; ancestor != null; ancestor = ancestor.parent) {
+                if (key != null && ancestor.key != null ? key.equals(ancestor.key)
+                        : Files.isSameFile(directory, ancestor.directory)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private void skipped(final Path directory) {
+        log.debug("Skipping {}, which is deeper than {} levels", directory, maxDepth);
+    }
+
+    /*
+     * Passes on the files below a directory walked on the calling thread. Directories at the maximum depth are passed
+     * to visitFile, as they aren't entered.
+     */
+    private final class Visitor extends SimpleFileVisitor<Path> {
+        private final Consumer<Path> files;
+
+        Visitor(final Consumer<Path> files) {
+            this.files = files;
+        }
+
+        @Override
+        public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) {
+            if (attributes.isRegularFile()) {
+                files.accept(file);
+            } else if (attributes.isDirectory()) {
+                skipped(file);
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(final Path file, final IOException e) throws IOException {
+            if (e instanceof FileSystemLoopException) {
+                return FileVisitResult.CONTINUE;
+            }
+            throw e;
+        }
+    }
+
+    /*
+     * Finds the files in a directory and forks a walk for each of its subdirectories, the files of which follow the
+     * ones of the directory in the order the subdirectories were listed.
+     */
+    private final class Walk extends RecursiveTask<List<Path>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final int depth;
+        private final Ancestor ancestors;
+
+        Walk(final Path directory, final int depth, final Ancestor ancestors) {
+            this.directory = directory;
+            this.depth = depth;
+            this.ancestors = ancestors;
+        }
+
+        @Override
+        protected List<Path> compute() {
+            final List<Path> files = new ArrayList<Path>();
+            if (depth >= maxDepth) {
+                skipped(directory);
+                return files;
+            }
+            final List<Walk> forks = new ArrayList<Walk>();
+            try {
+                // Subdirectories are passed to visitFile, as they are beyond the depth of this walk.
+                Files.walkFileTree(directory, FOLLOW_LINKS, 1, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes)
+                            throws IOException {
+                        if (attributes.isDirectory()) {
+                            if (!Ancestor.contains(ancestors, file, attributes)) {
+                                final Walk fork = new Walk(file, depth + 1, new Ancestor(file, attributes, ancestors));
+                                fork.fork();
+                                forks.add(fork);
+                            }
+                        } else if (attributes.isRegularFile()) {
+                            files.add(file);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            for (final Walk fork : forks) {
+                files.addAll(fork.join());
+            }
+            return files;
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package org.webjars;
 
 import java.io.*;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 import org.webjars.WebJarExtractor.Cacheable;
 
 import static org.webjars.CloseQuietly.closeQuietly;
@@ -11,14 +14,20 @@ import static org.webjars.CloseQuietly.closeQuietly;
  * A cache backed by a file on the filesystem.
  *
  * The cache expects that every single object in the cache will be touched on each use.  This means, when it saves,
- * if one object hasn't been touched, that one won't be saved.
+ * if one object hasn't been touched, that one won't be saved. The files put for a jar file are touched along with it
+ * when it is found to be up to date. The cache is thread safe.
  */
 public class FileSystemCache implements WebJarExtractor.Cache {
 
+	private static final String ARCHIVE = ":archive:";
+	private static final String ARCHIVE_FILE = ":file:";
+
 	private final File cache;
 
 	private Map<String, Cacheable> onFile;
 	private Map<String, Cacheable> touched;
+	private Map<String, Archive> archivesOnFile;
+	private Map<String, Archive> archivesTouched;
 	private boolean dirty;
 
 	public FileSystemCache(File cache) throws IOException {
@@ -27,32 +36,78 @@ public class FileSystemCache implements WebJarExtractor.Cache {
 	}
 
 	@Override
-	public boolean isUpToDate(String key, Cacheable cacheable) {
+	public synchronized boolean isUpToDate(String key, Cacheable cacheable) {
 		// First check touched
 		Cacheable t = touched.get(key);
 		if (t != null) {
-			return cacheable.equals(t);
+			return cacheable.isUpToDateWith(t);
 		} else {
 			Cacheable cached = onFile.get(key);
 			if (cached != null) {
 				touched.put(key, cached);
 			}
-			return cacheable.equals(cached);
+			return cacheable.isUpToDateWith(cached);
 		}
 	}
 
 	@Override
-	public void put(String key, Cacheable cacheable) {
+	public synchronized void put(String key, Cacheable cacheable) {
 		touched.put(key, cacheable);
 		dirty = true;
 	}
 
-	public void save() throws IOException {
-		if (dirty || onFile.size() != touched.size()) {
+	@Override
+	public synchronized boolean isArchiveUpToDate(String key, Cacheable archive) {
+		Archive cached = archivesTouched.get(key);
+		if (cached == null) {
+			cached = archivesOnFile.get(key);
+		}
+		if (cached == null || !archive.isSameArchiveAs(cached.fingerprint)) {
+			return false;
+		}
+		archivesTouched.put(key, cached);
+		for (String file : cached.keys) {
+			if (!touched.containsKey(file)) {
+				Cacheable cacheable = onFile.get(file);
+				if (cacheable != null) {
+					touched.put(file, cacheable);
+				}
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public synchronized void putArchive(String key, Cacheable archive, Collection<String> keys) {
+		archivesTouched.put(key, new Archive(archive, new LinkedHashSet<String>(keys)));
+		dirty = true;
+	}
+
+	/*
+	 * The files of a jar file follow it, one key per line. The lines of the files come first. The lines of jar files
+	 * start with a colon, which keys never do.
+	 */
+	public synchronized void save() throws IOException {
+		if (dirty || onFile.size() != touched.size() || archivesOnFile.size() != archivesTouched.size()) {
 			Writer writer = new OutputStreamWriter(new FileOutputStream(cache), "UTF-8");
 			try {
 				for (Map.Entry<String, Cacheable> item: touched.entrySet()) {
-					writer.write(item.getKey() + ":" + item.getValue().getLastModified() + ":" + item.getValue().getPath() + "\n");
+					Cacheable cacheable = item.getValue();
+					if (cacheable.getSize() >= 0) {
+						writer.write(item.getKey() + ":" + cacheable.getLastModified() + ":" + cacheable.getCrc() + ":"
+								+ cacheable.getSize() + ":" + cacheable.getPath() + "\n");
+					} else {
+						writer.write(item.getKey() + ":" + cacheable.getLastModified() + ":" + cacheable.getPath() + "\n");
+					}
+				}
+				for (Map.Entry<String, Archive> item: archivesTouched.entrySet()) {
+					Cacheable fingerprint = item.getValue().fingerprint;
+					writer.write(ARCHIVE + fingerprint.getLastModified() + ":" + fingerprint.getCrc() + ":"
+							+ fingerprint.getSize() + ":" + item.getKey().length() + ":" + item.getKey()
+							+ fingerprint.getPath() + "\n");
+					for (String file : item.getValue().keys) {
+						writer.write(ARCHIVE_FILE + file + "\n");
+					}
 				}
 				writer.flush();
 			} finally {
@@ -61,19 +116,32 @@ public class FileSystemCache implements WebJarExtractor.Cache {
 		}
 		onFile = touched;
 		touched = new HashMap<String, Cacheable>();
+		archivesOnFile = archivesTouched;
+		archivesTouched = new HashMap<String, Archive>();
 		dirty = false;
 	}
 
-	public void reset() throws IOException {
+	public synchronized void reset() throws IOException {
 		onFile = new HashMap<String, Cacheable>();
+		archivesOnFile = new HashMap<String, Archive>();
 		if (cache.exists()) {
 			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(cache), "UTF-8"));
 			try {
+				Archive archive = null;
 				String line = reader.readLine();
 				while (line != null) {
-					if (!line.isEmpty()) {
+					if (line.startsWith(ARCHIVE)) {
+						archive = parseArchive(line);
+					} else if (line.startsWith(ARCHIVE_FILE)) {
+						if (archive != null) {
+							archive.keys.add(line.substring(ARCHIVE_FILE.length()));
+						}
+					} else if (!line.isEmpty()) {
+						Cacheable withContents = parseWithContents(line);
 						String[] splitted = line.split(":", 3);
-						if (splitted.length == 3) {
+						if (withContents != null) {
+							onFile.put(splitted[0], withContents);
+						} else if (splitted.length == 3) {
 							String key = splitted[0];
 							String lastModified = splitted[1];
 							String path = splitted[2];
@@ -92,7 +160,61 @@ public class FileSystemCache implements WebJarExtractor.Cache {
 			}
 		}
 		touched = new HashMap<String, Cacheable>();
+		archivesTouched = new HashMap<String, Archive>();
 		dirty = false;
 	}
 
+	/*
+	 * Parse a :archive:lastModified:crc:size:keyLength:key+path line and add the jar file, or return null if the line is
+	 * malformed. The key is followed by the path right away, as both may contain colons.
+	 */
+	private Archive parseArchive(String line) {
+		String[] splitted = line.substring(ARCHIVE.length()).split(":", 5);
+		if (splitted.length != 5) {
+			return null;
+		}
+		try {
+			int keyLength = Integer.parseInt(splitted[3]);
+			if (keyLength < 0 || keyLength > splitted[4].length()) {
+				return null;
+			}
+			Archive archive = new Archive(new Cacheable(splitted[4].substring(keyLength), Long.parseLong(splitted[0]),
+					Long.parseLong(splitted[1]), Long.parseLong(splitted[2])), new LinkedHashSet<String>());
+			archivesOnFile.put(splitted[4].substring(0, keyLength), archive);
+			return archive;
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/*
+	 * Parse a key:lastModified:crc:size:path line, or return null if the line has a different format, such as the
+	 * key:lastModified:path format of sources the contents of which are unknown.
+	 */
+	private static Cacheable parseWithContents(String line) {
+		String[] splitted = line.split(":", 5);
+		if (splitted.length != 5) {
+			return null;
+		}
+		try {
+			return new Cacheable(splitted[4], Long.parseLong(splitted[1]), Long.parseLong(splitted[2]),
+					Long.parseLong(splitted[3]));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/*
+	 * A jar file along with the keys of the files extracted from it.
+	 */
+	private static final class Archive {
+		final Cacheable fingerprint;
+		final Set<String> keys;
+
+		Archive(Cacheable fingerprint, Set<String> keys) {
+			this.fingerprint = fingerprint;
+			this.keys = keys;
+		}
+	}
+
 }
@@ -0,0 +1,654 @@
+package org.webjars;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import static org.webjars.CloseQuietly.closeQuietly;
+
+/**
+ * A jar file of which only the central directory is read to list its entries. The central directory is memory mapped
+ * and the names of the entries are compared as raw bytes, so only the entries of interest, such as the resources of
+ * WebJars, are ever turned into objects. The contents of an entry are read from the jar file when asked for.
+ *
+ * Jar files nested in other jar files, as in executable "fat" jars, are read in place. A nested jar file that is
+ * stored uncompressed is a region of the outer jar file, so it is read like any other. One that is compressed is
+ * inflated into memory, as a whole and anew each time it is opened, so it takes as much heap as its uncompressed size
+ * while it is open. Neither is ever extracted to disk.
+ *
+ * The class is thread safe.
+ */
+final class JarArchive implements Closeable {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int END_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xffff;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_END_SIZE = 56;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+
+    private static final long MAX_U32 = 0xffffffffL;
+    private static final int MAX_U16 = 0xffff;
+
+    static final int STORED = 0;
+    static final int DEFLATED = 8;
+
+    private final String name;
+    private final Source source;
+    /*
+     * Offsets within the archive, as found in its headers, are relative to `base`. It is non-zero if data was
+     * prepended to the archive, as in self-extracting archives.
+     */
+    private final long base;
+    private final ByteBuffer centralDirectory;
+
+    private JarArchive(final String name, final Source source) throws IOException {
+        this.name = name;
+        this.source = source;
+
+        final long length = source.size();
+        final int tailLength = (int) Math.min(length, END_SIZE + MAX_COMMENT_SIZE);
+        final ByteBuffer tail = read(length - tailLength, tailLength);
+        int end = tailLength - END_SIZE;
+        while (end >= 0 && tail.getInt(end) != END_SIGNATURE) {
+            --end;
+        }
+        if (end < 0) {
+            throw new ZipException("No central directory found in " + name);
+        }
+        final long endPosition = length - tailLength + end;
+        long centralDirectorySize = u32(tail, end + 12);
+        long centralDirectoryOffset = u32(tail, end + 16);
+        long centralDirectoryEnd = endPosition;
+
+        if (centralDirectorySize == MAX_U32 || centralDirectoryOffset == MAX_U32 || u16(tail, end + 10) == MAX_U16) {
+            final long locatorPosition = endPosition - ZIP64_LOCATOR_SIZE;
+            final ByteBuffer locator = locatorPosition >= 0 ? read(locatorPosition, ZIP64_LOCATOR_SIZE) : null;
+            if (locator != null && locator.getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+                final long zip64EndPosition = locatorPosition - ZIP64_END_SIZE;
+                final ByteBuffer zip64End = read(zip64EndPosition, ZIP64_END_SIZE);
+                if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) {
+                    throw new ZipException("Invalid zip64 end of central directory in " + name);
+                }
+                centralDirectorySize = zip64End.getLong(40);
+                centralDirectoryOffset = zip64End.getLong(48);
+                centralDirectoryEnd = zip64EndPosition;
+            }
+        }
+        if (centralDirectorySize > Integer.MAX_VALUE) {
+            throw new ZipException("Central directory of " + name + " is too large");
+        }
+        this.base = centralDirectoryEnd - centralDirectorySize - centralDirectoryOffset;
+        if (base < 0) {
+            throw new ZipException("Invalid central directory offset in " + name);
+        }
+        this.centralDirectory = source.map(base + centralDirectoryOffset, (int) centralDirectorySize)
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @param file the jar file.
+     * @return the opened jar file. It must be closed.
+     * @throws IOException if the jar file can't be read, or isn't a jar file.
+     */
+    static JarArchive open(final File file) throws IOException {
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return new JarArchive(file.getPath(), new FileSource(channel, 0, channel.size()));
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw e;
+        } catch (RuntimeException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * Open the innermost jar file of a "jar:" URL, which may be nested in other jar files, e.g.
+     * "jar:file:/app.jar!/BOOT-INF/lib/lib.jar!/META-INF/resources/webjars".
+     *
+     * @param url the URL of a jar file or of a path within it.
+     * @return the opened jar file. It must be closed, which closes the jar files it is nested in as well.
+     * @throws IOException if a jar file can't be read, or a nested jar file doesn't exist.
+     */
+    static JarArchive open(final URL url) throws IOException {
+        final String path = url.getPath();
+        final String[] parts = path.split("!/");
+        // The last part is a path within the innermost jar file, unless the URL points to the jar file itself.
+        final int nestedEnd = path.endsWith("!/") ? parts.length : parts.length - 1;
+        final JarArchive outer = open(new File(URI.create(parts[0])));
+        JarArchive archive = outer;
+        try {
+            for (int i = 1; i < nestedEnd; ++i) {
+                final Entry entry = archive.entry(parts[i]);
+                if (entry == null) {
+                    throw new FileNotFoundException(parts[i] + " not found in " + archive.name);
+                }
+                archive = archive.nested(entry);
+            }
+        } catch (IOException e) {
+            closeQuietly(outer);
+            throw e;
+        } catch (RuntimeException e) {
+            closeQuietly(outer);
+            throw e;
+        }
+        return archive;
+    }
+
+    /**
+     * @param url the URL of a jar file or of a path within it.
+     * @return the outermost jar file of the URL, which is the one on the file system.
+     */
+    static File file(final URL url) {
+        final String path = url.getPath();
+        final int separator = path.indexOf("!/");
+        return new File(URI.create(separator < 0 ? path : path.substring(0, separator)));
+    }
+
+    /**
+     * @param url the URL of a jar file or of a path within it.
+     * @return whether the URL points into a jar file nested in another one.
+     */
+    static boolean isNested(final URL url) {
+        final String path = url.getPath();
+        final int first = path.indexOf("!/");
+        return first >= 0 && path.indexOf("!/", first + 2) >= 0;
+    }
+
+    /*
+     * Open a jar file nested in this one. Closing it closes this jar file.
+     */
+    private JarArchive nested(final Entry entry) throws IOException {
+        final String nestedName = name + "!/" + entry.name;
+        if (entry.method == STORED) {
+            return new JarArchive(nestedName, source.region(dataOffset(entry), entry.size));
+        }
+        if (entry.size > Integer.MAX_VALUE) {
+            throw new ZipException("Compressed nested jar file " + nestedName + " is too large");
+        }
+        final ByteBuffer contents = ByteBuffer.allocate((int) entry.size);
+        final InputStream in = getInputStream(entry);
+        try {
+            while (contents.hasRemaining()) {
+                final int read = in.read(contents.array(), contents.position(), contents.remaining());
+                if (read < 0) {
+                    throw new EOFException("Unexpected end of " + nestedName);
+                }
+                contents.position(contents.position() + read);
+            }
+        } finally {
+            closeQuietly(in);
+        }
+        return new JarArchive(nestedName, new MemorySource(contents, source));
+    }
+
+    /**
+     * @return the CRC-32 of the central directory, which changes whenever an entry is added, removed or changed.
+     */
+    long centralDirectoryCrc() {
+        final CRC32 crc = new CRC32();
+        crc.update(centralDirectory.duplicate());
+        return crc.getValue();
+    }
+
+    /**
+     * List the files, as opposed to directories, whose names start with the given prefix. The central directory is
+     * walked without creating any objects for the other entries.
+     *
+     * @param prefix the prefix of the names.
+     * @return the matching entries, in the order of the central directory.
+     * @throws ZipException if the central directory is corrupt.
+     */
+    List<Entry> entries(final String prefix) throws ZipException {
+        final byte[] prefixBytes = prefix.getBytes(UTF_8);
+        final List<Entry> entries = new ArrayList<Entry>();
+        final int limit = centralDirectory.limit();
+        int position = 0;
+        while (position + CENTRAL_HEADER_SIZE <= limit) {
+            if (centralDirectory.getInt(position) != CENTRAL_SIGNATURE) {
+                throw new ZipException("Invalid central directory header in " + name);
+            }
+            final int nameLength = u16(centralDirectory, position + 28);
+            final int extraLength = u16(centralDirectory, position + 30);
+            final int commentLength = u16(centralDirectory, position + 32);
+            final int nameStart = position + CENTRAL_HEADER_SIZE;
+            if (nameLength > 0 && startsWith(nameStart, nameLength, prefixBytes)
+                    && centralDirectory.get(nameStart + nameLength - 1) != '/') {
+                entries.add(entry(position, nameStart, nameLength, extraLength));
+            }
+            position = nameStart + nameLength + extraLength + commentLength;
+        }
+        return entries;
+    }
+
+    /**
+     * @param name the name of the file.
+     * @return the entry of the file, or null if there is none.
+     * @throws ZipException if the central directory is corrupt.
+     */
+    Entry entry(final String name) throws ZipException {
+        for (final Entry entry : entries(name)) {
+            if (entry.name.equals(name)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param entry an entry of this archive.
+     * @return the uncompressed contents of the entry.
+     * @throws IOException if the entry can't be read.
+     */
+    InputStream getInputStream(final Entry entry) throws IOException {
+        final InputStream data = new RegionInputStream(dataOffset(entry), entry.compressedSize);
+        switch (entry.method) {
+            case STORED:
+                return data;
+            case DEFLATED:
+                return new EntryInflaterInputStream(data);
+            default:
+                throw new ZipException("Unsupported compression method " + entry.method + " of " + entry.name
+                        + " in " + name);
+        }
+    }
+
+    /**
+     * Write the uncompressed contents of an entry to the channel. The contents of an entry that is stored uncompressed
+     * are transferred straight from the jar file, e.g. by {@link FileChannel#transferTo(long, long,
+     * WritableByteChannel)}, without copying them through the heap.
+     *
+     * @param entry  an entry of this archive.
+     * @param target the channel to write to.
+     * @throws IOException if the entry can't be read or the channel can't be written to.
+     */
+    void transferTo(final Entry entry, final WritableByteChannel target) throws IOException {
+        if (entry.method == STORED) {
+            source.transferTo(dataOffset(entry), entry.size, target);
+            return;
+        }
+        final InputStream in = getInputStream(entry);
+        try {
+            final byte[] buffer = new byte[8192];
+            int read = in.read(buffer);
+            while (read >= 0) {
+                final ByteBuffer written = ByteBuffer.wrap(buffer, 0, read);
+                while (written.hasRemaining()) {
+                    target.write(written);
+                }
+                read = in.read(buffer);
+            }
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /*
+     * The local header repeats the name, but may have a different extra field than the central directory.
+     */
+    private long dataOffset(final Entry entry) throws IOException {
+        final long localHeaderPosition = base + entry.localHeaderOffset;
+        final ByteBuffer localHeader = read(localHeaderPosition, LOCAL_HEADER_SIZE);
+        if (localHeader.getInt(0) != LOCAL_SIGNATURE) {
+            throw new ZipException("Invalid local header of " + entry.name + " in " + name);
+        }
+        return localHeaderPosition + LOCAL_HEADER_SIZE + u16(localHeader, 26) + u16(localHeader, 28);
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    private boolean startsWith(final int nameStart, final int nameLength, final byte[] prefixBytes) {
+        if (nameLength < prefixBytes.length) {
+            return false;
+        }
+        for (int i = 0; i < prefixBytes.length; ++i) {
+            if (centralDirectory.get(nameStart + i) != prefixBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Entry entry(final int position, final int nameStart, final int nameLength, final int extraLength)
+            throws ZipException {
+        final byte[] nameBytes = new byte[nameLength];
+        for (int i = 0; i < nameLength; ++i) {
+            nameBytes[i] = centralDirectory.get(nameStart + i);
+        }
+        long size = u32(centralDirectory, position + 24);
+        long compressedSize = u32(centralDirectory, position + 20);
+        long localHeaderOffset = u32(centralDirectory, position + 42);
+
+        // Sizes and offsets that don't fit are kept in the zip64 extra field, in this order.
+        if (size == MAX_U32 || compressedSize == MAX_U32 || localHeaderOffset == MAX_U32) {
+            int extra = nameStart + nameLength;
+            final int extraEnd = extra + extraLength;
+            while (extra + 4 <= extraEnd) {
+                final int id = u16(centralDirectory, extra);
+                final int length = u16(centralDirectory, extra + 2);
+                if (id == ZIP64_EXTRA_ID) {
+                    int field = extra + 4;
+                    if (size == MAX_U32) {
+                        size = centralDirectory.getLong(field);
+                        field += 8;
+                    }
+                    if (compressedSize == MAX_U32) {
+                        compressedSize = centralDirectory.getLong(field);
+                        field += 8;
+                    }
+                    if (localHeaderOffset == MAX_U32) {
+                        localHeaderOffset = centralDirectory.getLong(field);
+                    }
+                    break;
+                }
+                extra += 4 + length;
+            }
+        }
+        return new Entry(new String(nameBytes, UTF_8), u16(centralDirectory, position + 10),
+                dosToJavaTime(u32(centralDirectory, position + 12)), u32(centralDirectory, position + 16),
+                compressedSize, size, localHeaderOffset);
+    }
+
+    private ByteBuffer read(final long position, final int size) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (source.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of " + name);
+            }
+        }
+        return buffer;
+    }
+
+    private static int u16(final ByteBuffer buffer, final int position) {
+        return buffer.getShort(position) & 0xffff;
+    }
+
+    private static long u32(final ByteBuffer buffer, final int position) {
+        return buffer.getInt(position) & MAX_U32;
+    }
+
+    /*
+     * The same local time that ZipEntry.getTime() returns for entries without an extended timestamp.
+     */
+    private static long dosToJavaTime(final long dosTime) {
+        final Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set((int) ((dosTime >> 25) & 0x7f) + 1980, (int) ((dosTime >> 21) & 0x0f) - 1,
+                (int) ((dosTime >> 16) & 0x1f), (int) ((dosTime >> 11) & 0x1f), (int) ((dosTime >> 5) & 0x3f),
+                (int) ((dosTime << 1) & 0x3e));
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * An entry of the central directory.
+     */
+    static final class Entry {
+        final String name;
+        final int method;
+        final long lastModified;
+        final long crc;
+        final long compressedSize;
+        final long size;
+        private final long localHeaderOffset;
+
+        Entry(final String name, final int method, final long lastModified, final long crc, final long compressedSize,
+              final long size, final long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.lastModified = lastModified;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+    }
+
+    /*
+     * The bytes of a jar file, which are either a region of a file or in memory.
+     */
+    private interface Source extends Closeable {
+        long size();
+
+        /*
+         * Read into the buffer at the given position, like FileChannel.read(ByteBuffer, long).
+         */
+        int read(ByteBuffer buffer, long position) throws IOException;
+
+        ByteBuffer map(long position, int size) throws IOException;
+
+        /*
+         * Write the given number of bytes at the given position to the channel.
+         */
+        void transferTo(long position, long count, WritableByteChannel target) throws IOException;
+
+        Source region(long position, long size);
+    }
+
+    private static final class FileSource implements Source {
+        private final FileChannel channel;
+        private final long start;
+        private final long size;
+
+        FileSource(final FileChannel channel, final long start, final long size) {
+            this.channel = channel;
+            this.start = start;
+            this.size = size;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public int read(final ByteBuffer buffer, final long position) throws IOException {
+            if (position >= size) {
+                return -1;
+            }
+            if (buffer.remaining() <= size - position) {
+                return channel.read(buffer, start + position);
+            }
+            // Don't read beyond the region, and leave the limit as it was, so that callers tell a truncated region.
+            final int limit = buffer.limit();
+            buffer.limit(buffer.position() + (int) (size - position));
+            try {
+                return channel.read(buffer, start + position);
+            } finally {
+                buffer.limit(limit);
+            }
+        }
+
+        @Override
+        public ByteBuffer map(final long position, final int size) throws IOException {
+            return channel.map(FileChannel.MapMode.READ_ONLY, start + position, size);
+        }
+
+        @Override
+        public void transferTo(final long position, final long count, final WritableByteChannel target)
+                throws IOException {
+            if (position + count > size) {
+                throw new EOFException("Unexpected end of jar file");
+            }
+            long transferred = 0;
+            while (transferred < count) {
+                final long step = channel.transferTo(start + position + transferred, count - transferred, target);
+                if (step == 0 && start + position + transferred >= channel.size()) {
+                    throw new EOFException("Unexpected end of jar file");
+                }
+                transferred += step;
+            }
+        }
+
+        @Override
+        public Source region(final long position, final long size) {
+            return new FileSource(channel, start + position, size);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static final class MemorySource implements Source {
+        private final ByteBuffer contents;
+        /*
+         * The source that the contents were read from, which is closed along with this one.
+         */
+        private final Source parent;
+
+        MemorySource(final ByteBuffer contents, final Source parent) {
+            this.contents = contents;
+            this.parent = parent;
+        }
+
+        @Override
+        public long size() {
+            return contents.capacity();
+        }
+
+        @Override
+        public int read(final ByteBuffer buffer, final long position) {
+            if (position >= contents.capacity()) {
+                return -1;
+            }
+            final ByteBuffer region = map(position, (int) Math.min(buffer.remaining(), contents.capacity() - position));
+            final int read = region.remaining();
+            buffer.put(region);
+            return read;
+        }
+
+        @Override
+        public ByteBuffer map(final long position, final int size) {
+            final ByteBuffer region = contents.duplicate();
+            region.limit((int) position + size).position((int) position);
+            return region.slice();
+        }
+
+        @Override
+        public void transferTo(final long position, final long count, final WritableByteChannel target)
+                throws IOException {
+            if (position + count > contents.capacity()) {
+                throw new EOFException("Unexpected end of jar file");
+            }
+            final ByteBuffer region = map(position, (int) count);
+            while (region.hasRemaining()) {
+                target.write(region);
+            }
+        }
+
+        @Override
+        public Source region(final long position, final long size) {
+            return new MemorySource(map(position, (int) size), parent);
+        }
+
+        @Override
+        public void close() throws IOException {
+            parent.close();
+        }
+    }
+
+    /*
+     * Reads a region of the jar file without moving the position of the channel, so that entries can be read
+     * concurrently.
+     */
+    private final class RegionInputStream extends InputStream {
+        private long position;
+        private final long end;
+
+        RegionInputStream(final long position, final long length) {
+            this.position = position;
+            this.end = position + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            final int read = source.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of " + name);
+            }
+            position += read;
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+    }
+
+    /*
+     * Raw deflate data needs an extra dummy byte at its end, see Inflater(boolean).
+     */
+    private static final class EntryInflaterInputStream extends InflaterInputStream {
+        private boolean eof;
+        private boolean closed;
+
+        EntryInflaterInputStream(final InputStream in) {
+            super(in, new Inflater(true), 8192);
+        }
+
+        @Override
+        protected void fill() throws IOException {
+            if (eof) {
+                throw new EOFException("Unexpected end of deflated data");
+            }
+            len = in.read(buf, 0, buf.length);
+            if (len < 0) {
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                inf.end();
+                super.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.webjars;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded cache of recently missed partial paths. The cache is direct mapped: every partial path has a single slot
+ * it can be stored in, and it simply replaces whatever was stored there before. This keeps both lookups and updates
+ * O(1) and lock free, at the expense of forgetting a miss early every now and then. The class is thread safe.
+ */
+final class MissCache {
+
+    private final AtomicReferenceArray<String> slots;
+    private final int mask;
+
+    /**
+     * @param size the maximum number of misses to remember. Rounded up to the next power of two.
+     */
+    MissCache(final int size) {
+        final int capacity = size == 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+        this.slots = new AtomicReferenceArray<String>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    boolean contains(final String partialPath) {
+        return partialPath.equals(slots.get(slot(partialPath)));
+    }
+
+    void add(final String partialPath) {
+        slots.set(slot(partialPath), partialPath);
+    }
+
+    private int slot(final String partialPath) {
+        // Spread the higher bits of the hash code, like HashMap does.
+        final int hash = partialPath.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
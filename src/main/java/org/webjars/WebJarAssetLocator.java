@@ -2,22 +2,36 @@ package org.webjars;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
-import java.util.Iterator;
-import java.util.Map.Entry;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
-import static org.webjars.CloseQuietly.closeQuietly;
-
 /**
  * Locate WebJar assets. The class is thread safe.
  */
@@ -33,96 +47,108 @@ public class WebJarAssetLocator {
      */
     public static final String WEBJARS_PATH_PREFIX = "META-INF/resources/webjars";
 
-    private static final int MAX_DIRECTORY_DEPTH = 5;
-
-    private static void aggregateFile(final File file, final Set<String> aggregatedChildren, final Pattern filterExpr) {
-        final String path = file.getPath().replace('\\', '/');
-        final String relativePath = path.substring(path.indexOf(WEBJARS_PATH_PREFIX));
-        if (filterExpr.matcher(relativePath).matches()) {
-            aggregatedChildren.add(relativePath);
-        }
-    }
-
-    /*
-     * Recursively search all directories for relative file paths matching `filterExpr`.
+    /**
+     * The path to the precomputed index of the webjar resources of a jar file. See
+     * {@link WebJarIndexGenerator} for how to create one. Directories on the class path are always listed, even if
+     * they hold an index.
      */
-    private static Set<String> listFiles(final File file, final Pattern filterExpr) {
-        final Set<String> aggregatedChildren = new HashSet<String>();
-        aggregateChildren(file, file, aggregatedChildren, filterExpr, 0);
-        return aggregatedChildren;
-    }
-
-    private static void aggregateChildren(final File rootDirectory, final File file, final Set<String> aggregatedChildren, final Pattern filterExpr, final int level) {
-        if (file.isDirectory()) {
-            if (level > MAX_DIRECTORY_DEPTH) {
-                throw new IllegalStateException("Got deeper than " + MAX_DIRECTORY_DEPTH + " levels while searching " + rootDirectory);
-            }
-
-            for (final File child : file.listFiles()) {
-                aggregateChildren(rootDirectory, child, aggregatedChildren, filterExpr, level + 1);
-            }
-        } else {
-            aggregateFile(file, aggregatedChildren, filterExpr);
-        }
-    }
+    public static final String WEBJARS_INDEX_PATH = WEBJARS_PATH_PREFIX + "/.index";
 
     /*
      * Return all {@link URL}s defining {@value WebJarAssetLocator#WEBJARS_PATH_PREFIX} directory, either identifying JAR files or plain directories.
+     * A resource that is found through several class loaders, e.g. a parent and a child, is only returned once. URLs
+     * are told apart by their WebJarSource#key(URL), as URL#equals(Object) may resolve host names. The URLs are
+     * returned in the order they were found.
      */
      static Set<URL> listParentURLsWithResource(final ClassLoader[] classLoaders, final String resource) {
-        final Set<URL> urls = new HashSet<URL>();
+        final Map<String, URL> urls = new LinkedHashMap<String, URL>();
         for (final ClassLoader classLoader : classLoaders) {
             try {
                 final Enumeration<URL> enumeration = classLoader.getResources(resource);
                 while (enumeration.hasMoreElements()) {
-                    urls.add(enumeration.nextElement());
+                    final URL url = enumeration.nextElement();
+                    final String key = WebJarSource.key(url);
+                    if (!urls.containsKey(key)) {
+                        urls.put(key, url);
+                    }
                 }
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
         }
-        return urls;
+        return new LinkedHashSet<URL>(urls.values());
     }
 
     /*
-     * Return all of the resource paths filtered given an expression and a list
-     * of class loaders.
-     */
-    private static Set<String> getAssetPaths(final Pattern filterExpr,
-                                             final ClassLoader... classLoaders) {
-        final Set<String> assetPaths = new HashSet<String>();
-        final Set<URL> urls = listParentURLsWithResource(classLoaders, WEBJARS_PATH_PREFIX);
-        for (final URL url : urls) {
-            if ("file".equals(url.getProtocol())) {
-                final File file;
-                file = new File(url.getPath());
-                final Set<String> paths = listFiles(file, filterExpr);
-                assetPaths.addAll(paths);
-            } else if ("jar".equals(url.getProtocol())) {
-                final JarFile jarFile;
-                try {
-                    final String path = url.getPath();
-                    final File file = new File(URI.create(path.substring(0, path.indexOf("!"))));
-                    jarFile = new JarFile(file);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
+     * Pass all of the resource paths of the sources filtered given an
+     * expression to the consumer, as they are found. Each distinct jar file or directory is scanned once, even
+     * if it is found through several class loaders, but a resource path may be passed more than once if several of
+     * them hold it. If an executor is given, then each jar file or directory
+     * is scanned as a separate task of it and the results are passed on in the
+     * order of the sources, on the calling thread, so the consumer sees the same
+     * resource paths as for the sequential scan. If a snapshot is given, then unchanged jar files are served
+     * from it instead of being scanned.
+     */
+    private static void getAssetPaths(final List<WebJarSource> sources, final Pattern filterExpr,
+                                      final ExecutorService executor, final WebJarIndexSnapshot snapshot,
+                                      final Consumer<String> assetPaths) {
+        if (executor == null) {
+            for (final WebJarSource source : sources) {
+                source.assetPaths(null, filterExpr, snapshot, assetPaths);
+            }
+            return;
+        }
+
+        final List<Future<List<String>>> scans = new ArrayList<Future<List<String>>>(sources.size());
+        for (final WebJarSource source : sources) {
+            scans.add(executor.submit(new Callable<List<String>>() {
+                @Override
+                public List<String> call() {
+                    final List<String> sourceAssetPaths = new ArrayList<String>();
+                    source.assetPaths(null, filterExpr, snapshot, new Consumer<String>() {
+                        @Override
+                        public void accept(final String assetPath) {
+                            sourceAssetPaths.add(assetPath);
+                        }
+                    });
+                    return sourceAssetPaths;
+                }
+            }));
+        }
+        try {
+            for (final Future<List<String>> scan : scans) {
+                for (final String assetPath : scan.get()) {
+                    assetPaths.accept(assetPath);
                 }
-				try {
-					final Enumeration<JarEntry> entries = jarFile.entries();
-					while (entries.hasMoreElements()) {
-						final JarEntry entry = entries.nextElement();
-						final String assetPathCandidate = entry.getName();
-						if (!entry.isDirectory() && filterExpr.matcher(assetPathCandidate).matches()) {
-							assetPaths.add(assetPathCandidate);
-						}
-					}
-				} finally {
-					// Littering is bad for the environment.
-					closeQuietly(jarFile);
-				}
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            // Don't leave scans running once the result can no longer be used.
+            for (final Future<List<String>> scan : scans) {
+                scan.cancel(true);
+            }
+        }
+    }
+
+    /*
+     * Pass the resource paths of the given WebJars filtered given an expression
+     * and a list of class loaders to the consumer. The class loaders are only asked for the directories of
+     * those WebJars.
+     */
+    private static void getAssetPaths(final Collection<String> webJars, final Pattern filterExpr,
+                                      final Consumer<String> assetPaths, final ClassLoader... classLoaders) {
+        for (final String webJar : webJars) {
+            for (final WebJarSource source : WebJarSource.list(classLoaders, webJar)) {
+                source.assetPaths(webJar, filterExpr, null, assetPaths);
             }
         }
-        return assetPaths;
     }
 
     /**
@@ -143,16 +169,136 @@ public class WebJarAssetLocator {
     public static SortedMap<String, String> getFullPathIndex(
             final Pattern filterExpr, final ClassLoader... classLoaders) {
 
-        final Set<String> assetPaths = getAssetPaths(filterExpr, classLoaders);
+        final SortedMap<String, String> assetPathIndex = new TreeMap<String, String>();
+        getAssetPaths(WebJarIndexRegistry.sources(classLoaders), filterExpr, null, null, into(assetPathIndex));
+        return assetPathIndex;
+    }
+
+    /**
+     * Same as {@link #getFullPathIndex(Pattern, ClassLoader...)}, but the
+     * directories on the class path are only searched up to the given depth,
+     * rather than the one of the {@code org.webjars.maxDirectoryDepth} system
+     * property. Deeper directories are skipped, which is logged at debug level.
+     * Jar files are indexed in full.
+     *
+     * @param filterExpr        the regular expression to be used to filter resources that
+     *                          will be included in the index.
+     * @param maxDirectoryDepth the number of levels below
+     *                          {@value #WEBJARS_PATH_PREFIX} to find resources in. Files
+     *                          directly in it are on the first level, files of a WebJar's
+     *                          version directory on the third one.
+     * @param classLoaders      the class loaders to be considered for loading the resources
+     *                          from.
+     * @return the index.
+     * @throws IllegalArgumentException if the depth is less than 1.
+     */
+    public static SortedMap<String, String> getFullPathIndex(
+            final Pattern filterExpr, final int maxDirectoryDepth, final ClassLoader... classLoaders) {
+        if (maxDirectoryDepth < 1) {
+            throw new IllegalArgumentException("The directory depth must be at least 1, got " + maxDirectoryDepth);
+        }
+
+        final SortedMap<String, String> assetPathIndex = new TreeMap<String, String>();
+        // The sources of other depths can't be shared with other locators.
+        getAssetPaths(WebJarSource.list(classLoaders, maxDirectoryDepth), filterExpr, null, null,
+                into(assetPathIndex));
+        return assetPathIndex;
+    }
+
+    /**
+     * Same as {@link #getFullPathIndex(Pattern, ClassLoader...)}, but the jar files and directories found on the class
+     * path are scanned concurrently using the given executor. The resulting index is identical to the one of a
+     * sequential scan. Each directory is walked by a single task, unless the executor is a
+     * {@link java.util.concurrent.ForkJoinPool}, which large directories are split across as well.
+     *
+     * @param filterExpr   the regular expression to be used to filter resources that
+     *                     will be included in the index.
+     * @param executor     the executor to run the scans of the individual jar files and
+     *                     directories on. The executor is not shut down afterwards.
+     * @param classLoaders the class loaders to be considered for loading the resources
+     *                     from.
+     * @return the index.
+     */
+    public static SortedMap<String, String> getFullPathIndex(
+            final Pattern filterExpr, final ExecutorService executor, final ClassLoader... classLoaders) {
+
+        final SortedMap<String, String> assetPathIndex = new TreeMap<String, String>();
+        getAssetPaths(WebJarIndexRegistry.sources(classLoaders), filterExpr, executor, null,
+                into(assetPathIndex));
+        return assetPathIndex;
+    }
+
+    /**
+     * Same as {@link #getFullPathIndex(Pattern, ExecutorService, ClassLoader...)}, but the resource paths of jar files
+     * that haven't changed since they were recorded in the given snapshot are taken from the snapshot instead of
+     * scanning the jar files again. Changed and new jar files are scanned and recorded in the snapshot. It is up to
+     * the caller to {@link WebJarIndexSnapshot#save()} the snapshot afterwards.
+     *
+     * @param filterExpr   the regular expression to be used to filter resources that
+     *                     will be included in the index.
+     * @param executor     the executor to run the scans of the individual jar files and
+     *                     directories on, or null to scan them on the calling thread.
+     * @param snapshot     the snapshot of previously scanned jar files, or null to scan
+     *                     all of them.
+     * @param classLoaders the class loaders to be considered for loading the resources
+     *                     from.
+     * @return the index.
+     */
+    public static SortedMap<String, String> getFullPathIndex(
+            final Pattern filterExpr, final ExecutorService executor, final WebJarIndexSnapshot snapshot,
+            final ClassLoader... classLoaders) {
+
+        final SortedMap<String, String> assetPathIndex = new TreeMap<String, String>();
+        getAssetPaths(WebJarIndexRegistry.sources(classLoaders), filterExpr, executor, snapshot,
+                into(assetPathIndex));
+        return assetPathIndex;
+    }
+
+    /**
+     * Same as {@link #getFullPathIndex(Pattern, ClassLoader...)}, but only
+     * indexes the given WebJars. The class loaders are only asked for the
+     * directories of these WebJars, and only those directories are scanned, so
+     * the cost doesn't grow with the number of other WebJars on the class path.
+     * Jar files need to have entries for directories to be found this way.
+     *
+     * @param webJars      the names of the WebJars to index, e.g. "jquery".
+     * @param filterExpr   the regular expression to be used to filter resources that
+     *                     will be included in the index.
+     * @param classLoaders the class loaders to be considered for loading the resources
+     *                     from.
+     * @return the index.
+     */
+    public static SortedMap<String, String> getFullPathIndex(
+            final Collection<String> webJars, final Pattern filterExpr, final ClassLoader... classLoaders) {
+
+        final SortedMap<String, String> assetPathIndex = new TreeMap<String, String>();
+        getAssetPaths(webJars, filterExpr, into(assetPathIndex), classLoaders);
+        return assetPathIndex;
+    }
 
+    private static SortedMap<String, String> getFullPathIndex(final Collection<String> assetPaths) {
         final SortedMap<String, String> assetPathIndex = new TreeMap<String, String>();
+        final Consumer<String> consumer = into(assetPathIndex);
         for (final String assetPath : assetPaths) {
-            assetPathIndex.put(reversePath(assetPath), assetPath);
+            consumer.accept(assetPath);
         }
-
         return assetPathIndex;
     }
 
+    /*
+     * Return a consumer that puts resource paths straight into an index in the
+     * form returned by getFullPathIndex(Pattern, ClassLoader...). A resource path
+     * that is passed again replaces itself.
+     */
+    private static Consumer<String> into(final SortedMap<String, String> assetPathIndex) {
+        return new Consumer<String>() {
+            @Override
+            public void accept(final String assetPath) {
+                assetPathIndex.put(reversePath(assetPath), assetPath);
+            }
+        };
+    }
+
     /*
      * Make paths like aa/bb/cc = cc/bb/aa.
      */
@@ -168,15 +314,102 @@ public class WebJarAssetLocator {
         return reversedAssetPath.toString();
     }
 
-    final SortedMap<String, String> fullPathIndex;
+    /*
+     * The index is immutable, so readers only ever need to dereference it once
+     * and never block. Changes are published by replacing it.
+     */
+    final AtomicReference<AssetIndex> index;
+
+    /*
+     * What refresh(ExecutorService) scans, or null if the locator was given its
+     * index.
+     */
+    private volatile Scan scan;
+
+    /*
+     * The WebJars of a lazy locator, which are indexed one at a time until the
+     * whole index is needed. Null for other locators.
+     */
+    private volatile WebJarCatalog catalog;
+
+    /*
+     * The background scan of a locator that warms up, which sets the index
+     * once it completes. Null for other locators.
+     */
+    private volatile Warmup warmup;
+
+    /*
+     * Guards swapping in refreshed indexes along with the updates made while
+     * refreshes are running, which are applied to the refreshed index as well.
+     */
+    private final Object refreshLock = new Object();
+    private long refreshesStarted;
+    private long refreshApplied;
+    private int refreshesRunning;
+    private final List<Update> updatesDuringRefresh = new ArrayList<Update>();
 
     /**
      * Convenience constructor that will form a locator for all resources on the
      * current class path.
      */
     public WebJarAssetLocator() {
-        this(getFullPathIndex(Pattern.compile(".*"),
-                WebJarAssetLocator.class.getClassLoader()));
+        this(Pattern.compile(".*"), WebJarAssetLocator.class.getClassLoader());
+    }
+
+    /**
+     * Establish a locator for the resources found through the given class
+     * loaders. Unlike a locator given an index, it can be
+     * {@link #refresh(ExecutorService) refreshed}. The index of a single class
+     * loader is shared by all locators of the class loader and filter, so the
+     * class path is only scanned by the first of them.
+     *
+     * @param filterExpr   the regular expression to be used to filter resources that
+     *                     will be included in the index.
+     * @param classLoaders the class loaders to be considered for loading the resources
+     *                     from.
+     */
+    public WebJarAssetLocator(final Pattern filterExpr, final ClassLoader... classLoaders) {
+        this(new Scan(null, filterExpr, 0, classLoaders));
+    }
+
+    /**
+     * Same as {@link #WebJarAssetLocator(Pattern, ClassLoader...)}, but the
+     * locator remembers up to the given number of partial paths that could
+     * not be found, see {@link #WebJarAssetLocator(SortedMap, int)}. The
+     * misses are forgotten whenever the index changes, e.g. when it is
+     * refreshed.
+     *
+     * @param filterExpr    the regular expression to be used to filter resources that
+     *                      will be included in the index.
+     * @param missCacheSize the number of misses to remember.
+     * @param classLoaders  the class loaders to be considered for loading the resources
+     *                      from.
+     */
+    public WebJarAssetLocator(final Pattern filterExpr, final int missCacheSize, final ClassLoader... classLoaders) {
+        this(new Scan(null, filterExpr, checkMissCacheSize(missCacheSize), classLoaders));
+    }
+
+    /**
+     * Establish a locator for the given WebJars only, as found through the
+     * given class loaders. See
+     * {@link #getFullPathIndex(Collection, Pattern, ClassLoader...)} for how
+     * they are found. Refreshing the locator only indexes these WebJars as
+     * well.
+     *
+     * @param webJars      the names of the WebJars to index, e.g. "jquery".
+     * @param filterExpr   the regular expression to be used to filter resources that
+     *                     will be included in the index.
+     * @param classLoaders the class loaders to be considered for loading the resources
+     *                     from.
+     */
+    public WebJarAssetLocator(final Collection<String> webJars, final Pattern filterExpr,
+                              final ClassLoader... classLoaders) {
+        this(new Scan(new HashSet<String>(webJars), filterExpr, 0, classLoaders));
+    }
+
+    private WebJarAssetLocator(final Scan scan) {
+        this(scan.index());
+        this.scan = scan;
     }
 
     /**
@@ -185,7 +418,239 @@ public class WebJarAssetLocator {
      * @param fullPathIndex the index to use.
      */
     public WebJarAssetLocator(final SortedMap<String, String> fullPathIndex) {
-        this.fullPathIndex = fullPathIndex;
+        this(AssetIndex.of(fullPathIndex.values()));
+    }
+
+    /**
+     * Establish a locator given an index that it should use, which remembers
+     * up to the given number of partial paths that could not be found. Looking
+     * those up again costs a single hash lookup.
+     *
+     * @param fullPathIndex the index to use.
+     * @param missCacheSize the number of misses to remember.
+     */
+    public WebJarAssetLocator(final SortedMap<String, String> fullPathIndex, final int missCacheSize) {
+        this(AssetIndex.of(fullPathIndex.values(), checkMissCacheSize(missCacheSize)));
+    }
+
+    WebJarAssetLocator(final AssetIndex index) {
+        this.index = new AtomicReference<AssetIndex>(index);
+    }
+
+    private WebJarAssetLocator(final WebJarCatalog catalog, final Scan scan) {
+        this.index = new AtomicReference<AssetIndex>();
+        this.catalog = catalog;
+        this.scan = scan;
+    }
+
+    /**
+     * Create a locator without waiting for its index, which is built on the
+     * given executor instead. This way, the locator can be handed out before
+     * the class path has been scanned.
+     *
+     * Lookups that need the index before it is ready wait for it up to the
+     * given timeout, and throw an {@link IllegalStateException} if it is still
+     * not ready then. Before waiting, {@link #getFullPath(String)},
+     * {@link #getFullPath(String, String)} and {@link #findFullPath(String)}
+     * check whether the partial path, taken as a path below
+     * {@value #WEBJARS_PATH_PREFIX}, is a resource of the class loaders. So
+     * full paths such as "jquery/1.8.3/jquery.js" can be found right away,
+     * even with a timeout of 0. Probing stops as soon as the index is ready.
+     * Since a probe only asks whether that one resource exists, it may return
+     * a full path for a partial path that the finished index reports as
+     * ambiguous, e.g. because another WebJar has a resource ending in the
+     * same path.
+     *
+     * @param executor     the executor to build the index on. If it is a
+     *                     {@link java.util.concurrent.ForkJoinPool}, large
+     *                     directories are split across it.
+     * @param timeout      how long lookups wait for the index at most.
+     * @param unit         the unit of the timeout.
+     * @param filterExpr   the regular expression to be used to filter resources that
+     *                     will be included in the index.
+     * @param classLoaders the class loaders to be considered for loading the resources
+     *                     from.
+     * @return the locator. See {@link #ready()} for when its index is ready.
+     */
+    public static WebJarAssetLocator warmUp(final Executor executor, final long timeout, final TimeUnit unit,
+                                           final Pattern filterExpr, final ClassLoader... classLoaders) {
+        final Scan scan = new Scan(null, filterExpr, 0, classLoaders);
+        final WebJarAssetLocator locator = new WebJarAssetLocator(null, scan);
+        final CompletableFuture<WebJarAssetLocator> ready = CompletableFuture.supplyAsync(new Supplier<AssetIndex>() {
+            @Override
+            public AssetIndex get() {
+                return scan.index();
+            }
+        }, executor).thenApply(new Function<AssetIndex, WebJarAssetLocator>() {
+            @Override
+            public WebJarAssetLocator apply(final AssetIndex index) {
+                // A refresh may have been quicker.
+                locator.index.compareAndSet(null, index);
+                return locator;
+            }
+        });
+        locator.warmup = new Warmup(ready, unit.toNanos(timeout));
+        return locator;
+    }
+
+    /**
+     * @return a stage that completes with this locator once its index is
+     *         ready. It is complete already unless this locator was created
+     *         by {@link #warmUp(Executor, long, TimeUnit, Pattern, ClassLoader...)}.
+     */
+    public CompletionStage<WebJarAssetLocator> ready() {
+        final Warmup warmup = this.warmup;
+        // Hand out a dependent stage, so callers can't complete the one lookups wait for.
+        return warmup == null ? CompletableFuture.completedFuture(this)
+                : warmup.ready.thenApply(Function.<WebJarAssetLocator>identity());
+    }
+
+    /**
+     * Forget the sources and indexes that locators and extractors of a class
+     * loader share, so that the class path is scanned anew the next time they
+     * are needed, e.g. after a jar file on the class path has been replaced.
+     * Changes to directories on the class path are noticed anyway. Class
+     * loaders other than {@link java.net.URLClassLoader}s, such as the
+     * application class loader of Java 9 and later, need to be invalidated
+     * when entries are added to their class path as well.
+     * Locators that exist already keep their index, see
+     * {@link #refresh(ExecutorService)}.
+     *
+     * @param classLoaders the class loaders, or none to forget what is shared
+     *                     for all class loaders.
+     */
+    public static void invalidateCache(final ClassLoader... classLoaders) {
+        WebJarIndexRegistry.invalidate(classLoaders);
+    }
+
+    /**
+     * Create a locator that initially only finds out which WebJars there are
+     * through the given class loaders, going by their
+     * {@value #WEBJARS_PATH_PREFIX}/&lt;name&gt;/&lt;version&gt;/ directories.
+     * The resources of a WebJar are listed the first time that a lookup
+     * scoped to it, such as {@link #getFullPath(String, String)} or
+     * {@link #listWebJarAssets(String)}, needs them. Any other lookup needs
+     * the resources of all WebJars, so it indexes all of them at once.
+     *
+     * @param filterExpr   the regular expression to be used to filter resources that
+     *                     will be included in the index.
+     * @param classLoaders the class loaders to be considered for loading the resources
+     *                     from.
+     * @return the locator.
+     */
+    public static WebJarAssetLocator lazy(final Pattern filterExpr, final ClassLoader... classLoaders) {
+        return new WebJarAssetLocator(WebJarCatalog.of(filterExpr, classLoaders),
+                new Scan(null, filterExpr, 0, classLoaders));
+    }
+
+    /**
+     * Same as {@link #lazy(Pattern, ClassLoader...)}, but the locator
+     * remembers up to the given number of partial paths that could not be
+     * found in the whole index, see {@link #WebJarAssetLocator(SortedMap, int)}.
+     *
+     * @param filterExpr    the regular expression to be used to filter resources that
+     *                      will be included in the index.
+     * @param missCacheSize the number of misses to remember.
+     * @param classLoaders  the class loaders to be considered for loading the resources
+     *                      from.
+     * @return the locator.
+     */
+    public static WebJarAssetLocator lazy(final Pattern filterExpr, final int missCacheSize,
+                                          final ClassLoader... classLoaders) {
+        return new WebJarAssetLocator(WebJarCatalog.of(filterExpr, classLoaders),
+                new Scan(null, filterExpr, checkMissCacheSize(missCacheSize), classLoaders));
+    }
+
+    /*
+     * Return the whole index, waiting for it if this locator is warming up, or
+     * building it first if this is a lazy locator that hasn't needed it yet.
+     */
+    private AssetIndex index() {
+        final AssetIndex index = this.index.get();
+        return index != null ? index : missingIndex();
+    }
+
+    private AssetIndex missingIndex() {
+        final Warmup warmup = this.warmup;
+        if (warmup != null) {
+            warmup.await();
+            return index.get();
+        }
+        return buildIndex();
+    }
+
+    private synchronized AssetIndex buildIndex() {
+        AssetIndex index = this.index.get();
+        if (index == null) {
+            index = scan.index();
+            this.index.set(index);
+            final WebJarCatalog catalog = this.catalog;
+            if (catalog != null) {
+                // The whole index holds every WebJar, so the indexes of single WebJars are no longer needed.
+                this.catalog = catalog.released();
+            }
+        }
+        return index;
+    }
+
+    /*
+     * Return an index holding at least the resources of the given WebJar.
+     */
+    private AssetIndex index(final String webJar) {
+        final AssetIndex index = this.index.get();
+        if (index != null) {
+            return index;
+        }
+        final WebJarCatalog catalog = this.catalog;
+        final AssetIndex webJarIndex = catalog != null ? catalog.index(webJar) : null;
+        return webJarIndex != null ? webJarIndex : index();
+    }
+
+    /*
+     * Return the full path of the partial path if it is a resource of the
+     * class loaders of a locator that is warming up, or null.
+     */
+    private String probe(final String webJar, final String partialPath) {
+        if (warmup == null || index.get() != null || partialPath.endsWith("/")) {
+            return null;
+        }
+        final String path = partialPath.startsWith("/") ? partialPath.substring(1) : partialPath;
+        final String fullPath = WEBJARS_PATH_PREFIX + "/" + (webJar == null ? "" : webJar + "/") + path;
+        final Scan scan = this.scan;
+        if (!scan.filterExpr.matcher(fullPath).matches()) {
+            return null;
+        }
+        for (final ClassLoader classLoader : scan.classLoaders) {
+            final URL url = classLoader.getResource(fullPath);
+            if (url != null && isFile(classLoader, url, fullPath)) {
+                return fullPath;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Class loaders find directories as well. Directories of jar files are
+     * told apart by asking the class loader for their directory entry rather
+     * than by opening a JarURLConnection, which would cache the jar file.
+     */
+    private static boolean isFile(final ClassLoader classLoader, final URL url, final String fullPath) {
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return new File(url.toURI()).isFile();
+            } catch (URISyntaxException e) {
+                return false;
+            }
+        }
+        final URL directory = classLoader.getResource(fullPath + "/");
+        return directory == null || !directory.toString().equals(url + "/");
+    }
+
+    private static int checkMissCacheSize(final int missCacheSize) {
+        if (missCacheSize <= 0) {
+            throw new IllegalArgumentException("The size of the miss cache must be positive, got " + missCacheSize);
+        }
+        return missCacheSize;
     }
 
     private String throwNotFoundException(final String partialPath) {
@@ -203,72 +668,364 @@ public class WebJarAssetLocator {
      * @return a fully qualified path to the resource.
      */
     public String getFullPath(final String partialPath) {
-        
-        final String reversePartialPath = reversePath(prependSlash(partialPath));
-
-        final SortedMap<String, String> fullPathTail = fullPathIndex
-                .tailMap(reversePartialPath);
-
-        if (fullPathTail.size() == 0) {
-            throwNotFoundException(partialPath);
+        final AssetIndex index = this.index.get();
+        if (index == null) {
+            final String probed = probe(null, partialPath);
+            if (probed != null) {
+                return probed;
+            }
         }
+        return checkFullPath(partialPath, (index != null ? index : missingIndex()).find(partialPath));
+    }
 
-        final Iterator<Entry<String, String>> fullPathTailIter = fullPathTail
-                .entrySet().iterator();
-        final Entry<String, String> fullPathEntry = fullPathTailIter.next();
-        if (!fullPathEntry.getKey().startsWith(reversePartialPath)) {
-            throwNotFoundException(partialPath);
+    /**
+     * Same as {@link #getFullPath(String)}, but only considers the resources
+     * of the given WebJar. Resources of other WebJars are never looked at, so
+     * they can't cause multiple matches either.
+     *
+     * @param webJar      the name of the WebJar, e.g. "jquery".
+     * @param partialPath the path to return e.g. "jquery.js" or "abc/someother.js".
+     *                    This must be a distinct path within the WebJar. Include the
+     *                    version if several versions of the WebJar are present, e.g.
+     *                    "1.0.0/abc/someother.js".
+     * @return a fully qualified path to the resource.
+     */
+    public String getFullPath(final String webJar, final String partialPath) {
+        if (index.get() == null) {
+            final String probed = probe(webJar, partialPath);
+            if (probed != null) {
+                return probed;
+            }
         }
-        final String fullPath = fullPathEntry.getValue();
+        return checkFullPath(partialPath, index(webJar).find(webJar, partialPath));
+    }
 
-        if (fullPathTailIter.hasNext()
-                && fullPathTailIter.next().getKey()
-                .startsWith(reversePartialPath)) {
+    private String checkFullPath(final String partialPath, final String fullPath) {
+        if (fullPath == null) {
+            throwNotFoundException(partialPath);
+        } else if (fullPath == AssetPathTrie.MULTIPLE_MATCHES) {
             throw new MultipleMatchesException(
                     "Multiple matches found for "
                             + partialPath
                             + ". Please provide a more specific path, for example by including a version number.");
         }
-
         return fullPath;
     }
 
     /**
-     * 
-     * Prepends a forward slash to a path if there isn't already a forward slash at the front of the path
-     * 
-     * @param path the old path
-     * @return the new path
+     * Same as {@link #getFullPath(String)}, but tells whether the resource
+     * could not be found or is ambiguous by the result rather than by an
+     * exception.
+     *
+     * @param partialPath the path to return e.g. "jquery.js" or "abc/someother.js".
+     * @return the result of the lookup.
+     */
+    public LookupResult findFullPath(final String partialPath) {
+        final AssetIndex index = this.index.get();
+        final String probed = index == null ? probe(null, partialPath) : null;
+        final String fullPath = probed != null ? probed : (index != null ? index : missingIndex()).find(partialPath);
+        if (fullPath == null) {
+            return LookupResult.MISSING;
+        } else if (fullPath == AssetPathTrie.MULTIPLE_MATCHES) {
+            return LookupResult.AMBIGUOUS;
+        }
+        return new LookupResult(LookupResult.Status.FOUND, fullPath);
+    }
+
+    /*
+     * Return all of the asset paths of the index, sorted.
+     */
+    List<String> assetPaths() {
+        return index().assetPaths();
+    }
+
+    /*
+     * Apply changes of the resources on the class path to the index. Readers
+     * either see the index before or after all of the changes.
+     */
+    void update(final Collection<String> added, final Collection<String> removed) {
+        synchronized (refreshLock) {
+            AssetIndex current;
+            do {
+                current = index();
+            } while (!index.compareAndSet(current, current.with(added, removed)));
+            if (refreshesRunning > 0) {
+                updatesDuringRefresh.add(new Update(added, removed));
+            }
+        }
+    }
+
+    /**
+     * Rebuild the index in the background by scanning the class loaders of
+     * this locator again, and swap it in once it is complete. Lookups keep
+     * using the current index meanwhile. If refreshes overlap, the last one to
+     * be started wins, the results of earlier ones are dropped once it is in
+     * use. Changes applied by a {@link WebJarAssetWatcher} while a refresh
+     * is running are applied to the refreshed index as well. Other locators of the same class loader keep their index,
+     * but locators created afterwards share the refreshed one.
+     *
+     * @param executor the executor to rebuild the index on. The executor is not
+     *                 shut down afterwards. If it is a
+     *                 {@link java.util.concurrent.ForkJoinPool}, large
+     *                 directories are split across it.
+     * @return the future completing once the new index is in use.
+     * @throws IllegalStateException if the locator was given its index, rather
+     *                               than created from class loaders.
+     */
+    public Future<?> refresh(final ExecutorService executor) {
+        final Scan scan = this.scan;
+        if (scan == null) {
+            throw new IllegalStateException("The locator was given its index, so it has nothing to refresh it from");
+        }
+        return refresh(executor, scan);
+    }
+
+    /**
+     * Same as {@link #refresh(ExecutorService)}, but rebuilds the index from
+     * the given class loaders, e.g. after the class loaders of an application
+     * have been replaced. Later refreshes use them as well.
+     *
+     * @param executor     the executor to rebuild the index on. The executor is not
+     *                     shut down afterwards.
+     * @param filterExpr   the regular expression to be used to filter resources that
+     *                     will be included in the index.
+     * @param classLoaders the class loaders to be considered for loading the resources
+     *                     from.
+     * @return the future completing once the new index is in use.
      */
-    private String prependSlash(final String path) {
-        if (path.startsWith("/")) {
-            return path;
+    public Future<?> refresh(final ExecutorService executor, final Pattern filterExpr,
+                             final ClassLoader... classLoaders) {
+        final Scan scan = this.scan;
+        return refresh(executor, scan == null ? new Scan(null, filterExpr, 0, classLoaders)
+                : new Scan(scan.webJars, filterExpr, scan.missCacheSize, classLoaders));
+    }
+
+    private Future<?> refresh(final ExecutorService executor, final Scan scan) {
+        final long sequence;
+        final int updatesBefore;
+        synchronized (refreshLock) {
+            sequence = ++refreshesStarted;
+            updatesBefore = updatesDuringRefresh.size();
+            ++refreshesRunning;
+        }
+        try {
+            return executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        refresh(scan, sequence, updatesBefore);
+                    } finally {
+                        refreshDone();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshDone();
+            throw e;
+        }
+    }
+
+    private void refresh(final Scan scan, final long sequence, final int updatesBefore) {
+        WebJarIndexRegistry.invalidate(scan.classLoaders);
+        if (catalog != null) {
+            // Stay lazy, the whole index is built again once it is needed.
+            final WebJarCatalog refreshed = WebJarCatalog.of(scan.filterExpr, scan.classLoaders);
+            synchronized (refreshLock) {
+                if (sequence < refreshApplied) {
+                    return;
+                }
+                refreshApplied = sequence;
+                synchronized (this) {
+                    this.scan = scan;
+                    catalog = refreshed;
+                    index.set(null);
+                }
+            }
+            return;
+        }
+        AssetIndex refreshed = scan.index();
+        synchronized (refreshLock) {
+            if (sequence < refreshApplied) {
+                // A refresh started later is in use already.
+                return;
+            }
+            refreshApplied = sequence;
+            for (final Update update : updatesDuringRefresh.subList(updatesBefore, updatesDuringRefresh.size())) {
+                refreshed = refreshed.with(update.added, update.removed);
+            }
+            // Keep the settings of the index, such as its miss cache.
+            AssetIndex current;
+            do {
+                current = index.get();
+            } while (!index.compareAndSet(current, current == null ? refreshed : current.reindexed(refreshed)));
+            this.scan = scan;
         }
-        else {
-            return "/" + path;
+    }
+
+    private void refreshDone() {
+        synchronized (refreshLock) {
+            if (--refreshesRunning == 0) {
+                updatesDuringRefresh.clear();
+            }
         }
     }
 
+    /**
+     * @return the index of this locator in the form returned by
+     *         {@link #getFullPathIndex(Pattern, ClassLoader...)}. The map is an
+     *         unmodifiable snapshot, later changes to the locator's index are not
+     *         reflected in it.
+     */
     public SortedMap<String, String> getFullPathIndex() {
-        return fullPathIndex;
+        return Collections.unmodifiableSortedMap(getFullPathIndex(index().assetPaths()));
     }
 
     /**
      * List assets within a folder.
      *
      * @param folderPath the root path to the folder. Must begin with '/'.
-     * @return a set of folder paths that match.
+     * @return a set of folder paths that match, sorted. The set is a copy
+     *         that the caller may change.
      */
     public Set<String> listAssets(final String folderPath) {
-        final Collection<String> allAssets = fullPathIndex.values();
-        final Set<String> assets = new HashSet<String>();
-        final String prefix = WEBJARS_PATH_PREFIX + folderPath;
-        for (final String asset : allAssets) {
-            if (asset.startsWith(prefix)) {
-                assets.add(asset);
+        return new TreeSet<String>(listAssetsView(folderPath));
+    }
+
+    /**
+     * List assets within a folder without copying them.
+     *
+     * @param folderPath the root path to the folder. Must begin with '/'.
+     * @return an immutable set of folder paths that match, sorted. The set is
+     *         a view on the index, so it is cheap to obtain.
+     */
+    public Set<String> listAssetsView(final String folderPath) {
+        return index().startingWith(WEBJARS_PATH_PREFIX + folderPath);
+    }
+
+    /**
+     * List the assets of all versions of a WebJar.
+     *
+     * @param webJar the name of the WebJar, e.g. "jquery".
+     * @return an immutable set of the full paths of the assets, sorted. Empty
+     *         if the WebJar is unknown.
+     */
+    public Set<String> listWebJarAssets(final String webJar) {
+        return index(webJar).webJarAssetPaths(webJar);
+    }
+
+    /*
+     * Changes applied by a watcher.
+     */
+    private static final class Update {
+        final Collection<String> added;
+        final Collection<String> removed;
+
+        Update(final Collection<String> added, final Collection<String> removed) {
+            this.added = added;
+            this.removed = removed;
+        }
+    }
+
+    private static final class Warmup {
+        final CompletableFuture<WebJarAssetLocator> ready;
+        private final long timeoutNanos;
+
+        Warmup(final CompletableFuture<WebJarAssetLocator> ready, final long timeoutNanos) {
+            this.ready = ready;
+            this.timeoutNanos = timeoutNanos;
+        }
+
+        void await() {
+            try {
+                ready.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                throw new IllegalStateException("The index of the locator is not ready yet");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the index of the locator", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new RuntimeException(e.getCause());
             }
         }
-        return assets;
+    }
+
+    private static final class Scan {
+        /*
+         * The WebJars to index, or null for all of them.
+         */
+        final Set<String> webJars;
+        final Pattern filterExpr;
+        final int missCacheSize;
+        final ClassLoader[] classLoaders;
+
+        Scan(final Set<String> webJars, final Pattern filterExpr, final int missCacheSize,
+             final ClassLoader[] classLoaders) {
+            this.webJars = webJars;
+            this.filterExpr = filterExpr;
+            this.missCacheSize = missCacheSize;
+            this.classLoaders = classLoaders.clone();
+        }
+
+        AssetIndex index() {
+            if (webJars == null) {
+                // The shared index is given a miss cache of this locator's own.
+                return WebJarIndexRegistry.index(filterExpr, classLoaders).withMissCacheSize(missCacheSize);
+            }
+            final AssetIndex.Builder builder = new AssetIndex.Builder();
+            getAssetPaths(webJars, filterExpr, builder, classLoaders);
+            return builder.build().withMissCacheSize(missCacheSize);
+        }
+    }
+
+    /**
+     * The result of {@link WebJarAssetLocator#findFullPath(String)}.
+     */
+    public static final class LookupResult {
+
+        public enum Status {
+            /**
+             * A single resource matches the partial path.
+             */
+            FOUND,
+            /**
+             * No resource matches the partial path.
+             */
+            MISSING,
+            /**
+             * Several resources match the partial path.
+             */
+            AMBIGUOUS
+        }
+
+        private static final LookupResult MISSING = new LookupResult(Status.MISSING, null);
+        private static final LookupResult AMBIGUOUS = new LookupResult(Status.AMBIGUOUS, null);
+
+        private final Status status;
+        private final String fullPath;
+
+        private LookupResult(final Status status, final String fullPath) {
+            this.status = status;
+            this.fullPath = fullPath;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public boolean isFound() {
+            return status == Status.FOUND;
+        }
+
+        /**
+         * @return the fully qualified path to the resource, or null if it was
+         *         not {@link Status#FOUND}.
+         */
+        public String getFullPath() {
+            return fullPath;
+        }
     }
 
 }
@@ -0,0 +1,323 @@
+package org.webjars;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static org.webjars.WebJarAssetLocator.WEBJARS_INDEX_PATH;
+import static org.webjars.WebJarAssetLocator.WEBJARS_PATH_PREFIX;
+
+/**
+ * Keeps the index of a {@link WebJarAssetLocator} up to date with the WebJars found in directories on the class path,
+ * as is typical during development. Jar files are not watched. Symbolic links to directories are followed.
+ *
+ * The directories are watched with a {@link WatchService} on a daemon thread. Created and deleted files and
+ * directories are applied to the index incrementally, all of the events received at once in a single update, so that
+ * readers of the locator either see the index before or after the update, but never in between. Modified files keep
+ * their path, so they don't affect the index.
+ */
+public class WebJarAssetWatcher implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(WebJarAssetWatcher.class);
+
+	private static final EnumSet<FileVisitOption> FOLLOW_LINKS = EnumSet.of(FileVisitOption.FOLLOW_LINKS);
+
+	private final WebJarAssetLocator locator;
+	private final Pattern filterExpr;
+	private final AssetFilter filter;
+	private final ClassLoader[] classLoaders;
+	private final WatchService watchService;
+
+	/*
+	 * Only accessed by the thread that starts the watcher, and by the watcher thread once it is started.
+	 */
+	private final List<Path> roots = new ArrayList<Path>();
+	private final Map<WatchKey, Path> directories = new HashMap<WatchKey, Path>();
+	private final SortedSet<String> known = new TreeSet<String>();
+
+	private Thread thread;
+
+	/**
+	 * @param locator The locator to keep up to date.
+	 * @param filterExpr The regular expression the index of the locator was filtered with.
+	 * @param classLoaders The class loaders the index of the locator was built from.
+	 * @throws IOException If the file system can't be watched.
+	 */
+	public WebJarAssetWatcher(WebJarAssetLocator locator, Pattern filterExpr, ClassLoader... classLoaders) throws IOException {
+		this.locator = locator;
+		this.filterExpr = filterExpr;
+		this.filter = AssetFilter.of(filterExpr);
+		this.classLoaders = classLoaders;
+		this.watchService = FileSystems.getDefault().newWatchService();
+	}
+
+	/**
+	 * Start watching the directories. Changes that happened since the index of the locator was built are applied
+	 * right away: files found in the directories are added, and resources of the index that are neither found in the
+	 * directories nor in the jar files of the class loaders are removed.
+	 *
+	 * @throws IOException If a directory can't be watched.
+	 */
+	public synchronized void start() throws IOException {
+		if (thread != null) {
+			throw new IllegalStateException("The watcher has already been started");
+		}
+		for (URL url : WebJarAssetLocator.listParentURLsWithResource(classLoaders, WEBJARS_PATH_PREFIX)) {
+			if ("file".equals(url.getProtocol())) {
+				try {
+					roots.add(Paths.get(url.toURI()));
+				} catch (URISyntaxException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+		Set<String> added = new HashSet<String>();
+		for (Path root : roots) {
+			log.debug("Watching webjars in {}", root);
+			register(root, added);
+		}
+		// Directories are registered before they are walked, so later deletions are told by events.
+		locator.update(added, deletedBeforeStart());
+
+		thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				watch();
+			}
+		}, "webjars-watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stop watching the directories.
+	 */
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+	}
+
+	private void watch() {
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+				Set<String> added = new HashSet<String>();
+				Set<String> removed = new HashSet<String>();
+				// Apply everything that is already pending at once.
+				while (key != null) {
+					process(key, added, removed);
+					key = watchService.poll();
+				}
+				if (!added.isEmpty() || !removed.isEmpty()) {
+					log.debug("Updating index with {} added and {} removed webjar resources", added.size(), removed.size());
+					try {
+						locator.update(added, removed);
+					} catch (RuntimeException e) {
+						// Such as a lazy locator failing to build its index, which a later change may succeed with.
+						log.warn("Could not update the index with the changes of webjars", e);
+					}
+				}
+			}
+		} catch (ClosedWatchServiceException e) {
+			log.debug("Stopped watching webjars");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			log.warn("Stopped watching webjars", e);
+		}
+	}
+
+	private void process(WatchKey key, Set<String> added, Set<String> removed) throws IOException {
+		Path directory = directories.get(key);
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW) {
+				rescan(added, removed);
+			} else if (directory != null) {
+				Path path = directory.resolve((Path) event.context());
+				if (event.kind() == ENTRY_CREATE) {
+					register(path, added);
+					removed.removeAll(added);
+				} else if (event.kind() == ENTRY_DELETE) {
+					forget(path, removed);
+					added.removeAll(removed);
+				}
+			}
+		}
+		if (!key.reset()) {
+			directories.remove(key);
+		}
+	}
+
+	/*
+	 * Return the resources of the index that are neither in the directories, as just found, nor in jar files. The jar
+	 * files are only listed if the index holds resources that weren't found in the directories.
+	 */
+	private Set<String> deletedBeforeStart() {
+		Set<String> deleted = new HashSet<String>();
+		final Set<String> inJars = new HashSet<String>();
+		boolean jarsListed = false;
+		for (String assetPath : locator.assetPaths()) {
+			if (known.contains(assetPath)) {
+				continue;
+			}
+			if (!jarsListed) {
+				for (WebJarSource source : WebJarIndexRegistry.sources(classLoaders)) {
+					if (!"file".equals(source.url.getProtocol())) {
+						source.assetPaths(null, filterExpr, null, new Consumer<String>() {
+							@Override
+							public void accept(String assetPath) {
+								inJars.add(assetPath);
+							}
+						});
+					}
+				}
+				jarsListed = true;
+			}
+			if (!inJars.contains(assetPath)) {
+				deleted.add(assetPath);
+			}
+		}
+		return deleted;
+	}
+
+	/*
+	 * Watch the directory and everything below it, or just add the file.
+	 */
+	private void register(Path path, final Set<String> added) throws IOException {
+		Files.walkFileTree(path, FOLLOW_LINKS, Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				directories.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE), dir);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				String assetPath = assetPath(file);
+				if (assetPath != null && known.add(assetPath)) {
+					added.add(assetPath);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException e) {
+				// Most likely deleted in the meantime, which a later event will tell.
+				log.debug("Could not visit {}", file, e);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/*
+	 * Forget the file, or everything below the directory. As it is gone, there is no telling which one it was.
+	 * Resources that are still found in another directory or in a jar file are not removed.
+	 */
+	private void forget(Path path, Set<String> removed) throws IOException {
+		String relativePath = relativePath(path);
+		if (relativePath == null) {
+			return;
+		}
+		List<String> gone = new ArrayList<String>();
+		if (known.remove(relativePath)) {
+			gone.add(relativePath);
+		}
+		SortedSet<String> below = known.subSet(relativePath + "/", relativePath + "/\uffff");
+		gone.addAll(below);
+		below.clear();
+		for (String assetPath : gone) {
+			if (!stillFound(assetPath)) {
+				removed.add(assetPath);
+			}
+		}
+	}
+
+	/*
+	 * Whether the class loaders still find the resource, in another directory or in a jar file. Resources found in
+	 * another directory stay known, so that their deletion there is told as well.
+	 */
+	private boolean stillFound(String assetPath) throws IOException {
+		boolean found = false;
+		for (ClassLoader classLoader : classLoaders) {
+			Enumeration<URL> urls = classLoader.getResources(assetPath);
+			while (urls.hasMoreElements()) {
+				if ("file".equals(urls.nextElement().getProtocol())) {
+					known.add(assetPath);
+					return true;
+				}
+				found = true;
+			}
+		}
+		return found;
+	}
+
+	/*
+	 * Events got lost, so compare what is known with what is there.
+	 */
+	private void rescan(Set<String> added, Set<String> removed) throws IOException {
+		log.debug("Missed some changes of webjars, rescanning {}", roots);
+		Set<String> before = new HashSet<String>(known);
+		known.clear();
+		Set<String> found = new HashSet<String>();
+		for (Path root : roots) {
+			register(root, found);
+		}
+		for (String assetPath : before) {
+			if (!found.contains(assetPath) && !stillFound(assetPath)) {
+				removed.add(assetPath);
+				added.remove(assetPath);
+			}
+		}
+		for (String assetPath : found) {
+			if (!before.contains(assetPath)) {
+				added.add(assetPath);
+				removed.remove(assetPath);
+			}
+		}
+	}
+
+	private String assetPath(Path file) {
+		String assetPath = relativePath(file);
+		if (assetPath == null || WEBJARS_INDEX_PATH.equals(assetPath) || !filter.accepts(assetPath)) {
+			return null;
+		}
+		return assetPath;
+	}
+
+	private static String relativePath(Path path) {
+		String fullPath = path.toString().replace('\\', '/');
+		int prefix = fullPath.indexOf(WEBJARS_PATH_PREFIX);
+		return prefix < 0 ? null : fullPath.substring(prefix);
+	}
+}
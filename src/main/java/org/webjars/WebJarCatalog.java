@@ -0,0 +1,102 @@
+package org.webjars;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The WebJars found through a set of class loaders, each of which is only indexed once it is first needed. Finding out
+ * which WebJars there are doesn't collect any resource paths. The class is thread safe.
+ */
+final class WebJarCatalog {
+
+    private static final AssetIndex EMPTY = AssetIndex.of(Collections.<String>emptySet());
+
+    private static final WebJarCatalog RELEASED = new WebJarCatalog(null);
+
+    private final Map<String, WebJar> webJars;
+
+    private WebJarCatalog(final Map<String, WebJar> webJars) {
+        this.webJars = webJars;
+    }
+
+    /**
+     * @param filterExpr   the regular expression to be used to filter resources that will be included in the indexes of
+     *                     the WebJars.
+     * @param classLoaders the class loaders to be considered for loading the resources from.
+     * @return the catalog.
+     */
+    static WebJarCatalog of(final Pattern filterExpr, final ClassLoader... classLoaders) {
+        final Map<String, WebJar> webJars = new HashMap<String, WebJar>();
+        for (final WebJarSource source : WebJarIndexRegistry.sources(classLoaders)) {
+            for (final String name : source.webJarNames()) {
+                WebJar webJar = webJars.get(name);
+                if (webJar == null) {
+                    webJar = new WebJar(name, filterExpr);
+                    webJars.put(name, webJar);
+                }
+                webJar.sources.add(source);
+            }
+        }
+        return new WebJarCatalog(webJars);
+    }
+
+    /**
+     * Return the index of a WebJar, indexing it if this is the first time that it is needed.
+     *
+     * @param webJar the name of the WebJar.
+     * @return the index of all versions of the WebJar, empty if the WebJar is unknown, or null if the catalog was
+     *         released.
+     */
+    AssetIndex index(final String webJar) {
+        if (webJars == null) {
+            return null;
+        }
+        final WebJar entry = webJars.get(webJar);
+        return entry == null ? EMPTY : entry.index();
+    }
+
+    /**
+     * @return a catalog without any WebJars or indexes, for a locator that has indexed all of the WebJars at once.
+     *         Its lookups return null.
+     */
+    WebJarCatalog released() {
+        return RELEASED;
+    }
+
+    private static final class WebJar {
+        private final String name;
+        private final Pattern filterExpr;
+        /*
+         * The jar files and directories holding the WebJar.
+         */
+        private final List<WebJarSource> sources = new ArrayList<WebJarSource>();
+        private volatile AssetIndex index;
+
+        WebJar(final String name, final Pattern filterExpr) {
+            this.name = name;
+            this.filterExpr = filterExpr;
+        }
+
+        AssetIndex index() {
+            AssetIndex index = this.index;
+            if (index == null) {
+                synchronized (this) {
+                    index = this.index;
+                    if (index == null) {
+                        final AssetIndex.Builder builder = new AssetIndex.Builder();
+                        for (final WebJarSource source : sources) {
+                            source.assetPaths(name, filterExpr, null, builder);
+                        }
+                        index = builder.build();
+                        this.index = index;
+                    }
+                }
+            }
+            return index;
+        }
+    }
+}
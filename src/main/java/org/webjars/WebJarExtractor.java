@@ -4,13 +4,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
-import java.util.zip.ZipEntry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import static org.webjars.CloseQuietly.closeQuietly;
 import static org.webjars.WebJarAssetLocator.WEBJARS_PATH_PREFIX;
@@ -32,6 +37,7 @@ public class WebJarExtractor {
 
 	private final Cache cache;
 	private final ClassLoader classLoader;
+	private final boolean skipUnchangedJarFiles;
 
 	public WebJarExtractor() {
 		this(WebJarExtractor.class.getClassLoader());
@@ -42,8 +48,21 @@ public class WebJarExtractor {
 	}
 
 	public WebJarExtractor(Cache cache, ClassLoader classLoader) {
+		this(cache, classLoader, false);
+	}
+
+	/**
+	 * @param cache The cache of the files extracted.
+	 * @param classLoader The class loader to find the WebJars with.
+	 * @param skipUnchangedJarFiles Whether jar files that haven't changed since they were last extracted are skipped
+	 *                              without opening them. Files deleted from the location extracted to are not restored
+	 *                              then until the jar file they come from changes. See
+	 *                              {@link #extractWebJarsTo(String, boolean, File, ExecutorService)}.
+	 */
+	public WebJarExtractor(Cache cache, ClassLoader classLoader, boolean skipUnchangedJarFiles) {
 		this.cache = cache;
 		this.classLoader = classLoader;
+		this.skipUnchangedJarFiles = skipUnchangedJarFiles;
 	}
 
     /**
@@ -52,7 +71,20 @@ public class WebJarExtractor {
      * @param to The directory to extract to.
      */
     public void extractAllWebJarsTo(File to) throws IOException {
-        extractWebJarsTo(null, false, to);
+        extractWebJarsTo(null, false, to, null);
+    }
+
+    /**
+     * Extract all WebJars, copying files concurrently on the given executor. See
+     * {@link #extractWebJarsTo(String, boolean, File, ExecutorService)}.
+     *
+     * @param to The directory to extract to.
+     * @param executor The executor to copy the files on, which bounds the number of files copied at once, or null to
+     *                 copy them on the calling thread.
+     * @return What the extraction did.
+     */
+    public Report extractAllWebJarsTo(File to, ExecutorService executor) throws IOException {
+        return extractWebJarsTo(null, false, to, executor);
     }
 
     /**
@@ -64,7 +96,20 @@ public class WebJarExtractor {
      * @param to The location to extract it to. All WebJars will be merged into this location.
      */
     public void extractWebJarTo(String name, File to) throws IOException {
-        extractWebJarsTo(name, false, to);
+        extractWebJarsTo(name, false, to, null);
+    }
+
+    /**
+     * Extract the given WebJar to the given location, copying files concurrently on the given executor.
+     *
+     * @param name The name of the WebJar to extract.
+     * @param to The location to extract it to. All WebJars will be merged into this location.
+     * @param executor The executor to copy the files on, which bounds the number of files copied at once, or null to
+     *                 copy them on the calling thread.
+     * @return What the extraction did.
+     */
+    public Report extractWebJarTo(String name, File to, ExecutorService executor) throws IOException {
+        return extractWebJarsTo(name, false, to, executor);
     }
 
     /**
@@ -73,17 +118,141 @@ public class WebJarExtractor {
      * @param to The location to extract it to. All WebJars will be merged into this location.
      */
     public void extractAllNodeModulesTo(File to) throws IOException {
-        extractWebJarsTo(null, true, to);
+        extractWebJarsTo(null, true, to, null);
+    }
+
+    /**
+     * Extract the node_modules of all WebJars and merge them into the same folder, copying files concurrently on the
+     * given executor.
+     *
+     * @param to The location to extract it to. All WebJars will be merged into this location.
+     * @param executor The executor to copy the files on, which bounds the number of files copied at once, or null to
+     *                 copy them on the calling thread.
+     * @return What the extraction did.
+     */
+    public Report extractAllNodeModulesTo(File to, ExecutorService executor) throws IOException {
+        return extractWebJarsTo(null, true, to, executor);
     }
 
     /**
      * A generalised form for extracting WebJars.
      *
+     * The extraction is planned before anything is written, so that it takes as few file system calls as possible.
+     * The files to copy are found first. If several WebJars hold a file for the same location, then only the one
+     * found last on the class path is copied, as it would have overwritten the others anyway. Likewise, a file is not
+     * copied if a WebJar found later holds files below the same location, as the directory for them replaces it. Then
+     * each target directory is listed once, rather than looking up each file on its own, to tell which files that the
+     * cache considers up to date are still there. The missing directories are created once each, parents first, and
+     * files in their way are deleted. Finally, the files that are not up to date are written, either one after the
+     * other or, if an executor is given, as separate tasks of it, so that files of all WebJars are copied concurrently.
+     * The cache needs to be thread safe then. The extraction returns once all files have been copied, or as soon as
+     * one of them could not be copied.
+     *
+     * If the extractor is to skip unchanged jar files, they are fingerprinted by the cache, so that a jar file that
+     * hasn't changed since it was last extracted is skipped after looking it up once, without opening it. It is only opened if files of WebJars found before it
+     * on the class path are to be copied, to tell which of them it shadows. Jar files are never skipped if the
+     * location to extract to doesn't exist. Files deleted from it while the cache is kept are not restored until the
+     * jar file they come from changes, and neither are the files shadowed by a jar file that was removed from the
+     * class path.
+     *
      * @param name          If null then all WebJars are extracted, otherwise the name of a single WebJars.
      * @param nodeModules   If true then only WebJars containing a package.json at the root will be extracted.
      * @param to            The location to extract it to. All WebJars will be merged into this location.
+     * @param executor      The executor to copy the files on, or null to copy them on the calling thread.
+     * @return What the extraction did.
+     */
+    private Report extractWebJarsTo(String name, boolean nodeModules, File to, ExecutorService executor)
+            throws IOException {
+        Plan plan = new Plan();
+        Map<File, Copy> copies = plan.copies;
+        try {
+            findCopies(name, nodeModules, to, plan);
+
+            // Group the files by directory, so that each directory is listed once.
+            Map<File, List<Copy>> directories = new LinkedHashMap<File, List<Copy>>();
+            for (Copy copy : copies.values()) {
+                File directory = copy.copyTo.getParentFile();
+                List<Copy> inDirectory = directories.get(directory);
+                if (inDirectory == null) {
+                    inDirectory = new ArrayList<Copy>();
+                    directories.put(directory, inDirectory);
+                }
+                inDirectory.add(copy);
+            }
+
+            List<Copy> writes = new ArrayList<Copy>();
+            SortedSet<File> missingDirectories = new TreeSet<File>();
+            for (Map.Entry<File, List<Copy>> directory : directories.entrySet()) {
+                String[] names = directory.getKey().list();
+                Set<String> existing = names == null ? null : new HashSet<String>(Arrays.asList(names));
+                if (existing == null) {
+                    missingDirectories.add(directory.getKey());
+                }
+                for (Copy copy : directory.getValue()) {
+                    log.debug("Checking whether {} is up to date at {}", copy.cacheable.getPath(), copy.copyTo);
+                    // The cache is asked first, as it is always asked, so that it knows which entries are still in use.
+                    if (!cache.isUpToDate(copy.key, copy.cacheable) || existing == null
+                            || !existing.contains(copy.copyTo.getName())) {
+                        log.debug("Up to date check failed, copying {} to {}", copy.cacheable.getPath(), copy.copyTo);
+                        writes.add(copy);
+                    }
+                }
+            }
+
+            int directoriesCreated = 0;
+            for (File directory : missingDirectories) {
+                // Parents come first, so a single call usually does.
+                directoriesCreated += directory.mkdir() ? 1 : ensureIsDirectory(directory);
+            }
+
+            if (executor == null) {
+                for (Copy copy : writes) {
+                    copy.call();
+                }
+            } else {
+                copyConcurrently(writes, executor);
+            }
+            for (Fingerprint fingerprint : plan.fingerprints) {
+                cache.putArchive(fingerprint.key, fingerprint.archive, fingerprint.keys);
+            }
+            return new Report(writes.size(), copies.size() - writes.size(), plan.shadowed, directoriesCreated,
+                    plan.archivesSkipped);
+        } finally {
+            for (JarArchive archive : plan.archives) {
+                closeQuietly(archive);
+            }
+        }
+    }
+
+    /*
+     * What an extraction is to do.
+     */
+    private static final class Plan {
+        final Map<File, Copy> copies = new LinkedHashMap<File, Copy>();
+        final List<JarArchive> archives = new ArrayList<JarArchive>();
+        // The jar files to put in the cache once their files are up to date.
+        final List<Fingerprint> fingerprints = new ArrayList<Fingerprint>();
+        int shadowed;
+        int archivesSkipped;
+    }
+
+    private static final class Fingerprint {
+        final String key;
+        final Cacheable archive;
+        final Collection<String> keys = new ArrayList<String>();
+
+        Fingerprint(String key, Cacheable archive) {
+            this.key = key;
+            this.archive = archive;
+        }
+    }
+
+    /*
+     * Find the files to copy, by their location. The archives are opened along the way and left open for copying.
      */
-    private void extractWebJarsTo(String name, boolean nodeModules, File to) throws IOException {
+    private void findCopies(String name, boolean nodeModules, File to, Plan plan) throws IOException {
+        Map<File, Copy> copies = plan.copies;
+        boolean skippable = skipUnchangedJarFiles && to.isDirectory();
 		String fullPath = WEBJARS_PATH_PREFIX + "/";
         String searchPath;
         if (name != null) {
@@ -91,50 +260,86 @@ public class WebJarExtractor {
         } else {
             searchPath = fullPath;
         }
-        for (URL url: WebJarAssetLocator.listParentURLsWithResource(new ClassLoader[] {classLoader}, searchPath)) {
+        // A single WebJar is looked up directly, so that other jar files aren't opened. Otherwise the sources are
+        // shared with the locators of the class loader, so the class path is only searched once.
+        ClassLoader[] classLoaders = new ClassLoader[] {classLoader};
+        List<WebJarSource> sources = name != null ? WebJarSource.list(classLoaders, name)
+                : WebJarIndexRegistry.sources(classLoaders);
+        for (WebJarSource source: sources) {
+            URL url = source.url;
 			if ("jar".equals(url.getProtocol())) {
 
-				String urlPath = url.getPath();
-				File file = new File(URI.create(urlPath.substring(0, urlPath.indexOf("!"))));
-				log.debug("Loading webjar from {}", file);
-				JarFile jarFile = new JarFile(file);
+				String archiveKey = null;
+				Cacheable stat = null;
+				boolean skipped = false;
+				if (skipUnchangedJarFiles) {
+					File jarFile = JarArchive.file(url);
+					BasicFileAttributes attributes = Files.readAttributes(jarFile.toPath(), BasicFileAttributes.class);
+					archiveKey = source.key + (nodeModules ? " node modules" : "") + (name != null ? " " + name : "")
+							+ " to " + to.getAbsolutePath();
+					stat = new Cacheable(jarFile.getPath(), attributes.lastModifiedTime().toMillis(), -1,
+							attributes.size());
+					skipped = skippable && cache.isArchiveUpToDate(archiveKey, stat);
+					if (skipped && copies.isEmpty()) {
+						log.debug("Skipping webjar {}, as it is up to date", url);
+						++plan.archivesSkipped;
+						continue;
+					}
+				}
+
+				log.debug("Loading webjar from {}", url);
+				JarArchive archive = JarArchive.open(url);
+				plan.archives.add(archive);
+				Fingerprint fingerprint = null;
+				if (skipUnchangedJarFiles && !skipped) {
+					// A jar file that was rebuilt or touched may still have the same entries.
+					Cacheable archived = new Cacheable(stat.getPath(), stat.getLastModified(),
+							archive.centralDirectoryCrc(), stat.getSize());
+					skipped = skippable && cache.isArchiveUpToDate(archiveKey, archived);
+					fingerprint = new Fingerprint(archiveKey, archived);
+					plan.fingerprints.add(fingerprint);
+				}
+				if (skipped) {
+					log.debug("Skipping webjar {}, as it is up to date, apart from the files it shadows", url);
+					++plan.archivesSkipped;
+				}
 
-				try {
-                    boolean filteredNodeModule = !nodeModules;
-                    boolean matched = !nodeModules;
-                    File matchedTo = to;
-                    Enumeration<JarEntry> entries = jarFile.entries();
-                    while (entries.hasMoreElements()) {
-                        JarEntry entry = entries.nextElement();
-                        if (!entry.isDirectory() && entry.getName().startsWith(fullPath)) {
-                            String webJarPath = entry.getName().substring(fullPath.length());
-                            String[] nameVersion = webJarPath.split("/", 3);
-                            if (nameVersion.length == 3) {
-                                if (!filteredNodeModule) {
-                                    String moduleId = getJarNodeModuleIdEntry(
-                                            jarFile,
-                                            fullPath + nameVersion[0] + "/" + nameVersion[1] + "/" + PACKAGE_JSON
-                                            );
-                                    if (moduleId != null) {
-                                        matchedTo = new File(to, moduleId);
-                                        matched = true;
-                                    }
-                                    filteredNodeModule = true;
-                                }
-                                if (matched) {
-                                    String relativeName = nameVersion[2];
-                                    File copyTo = new File(matchedTo, relativeName);
-                                    copyJarEntry(jarFile, entry, copyTo, relativeName);
-                                }
+                boolean filteredNodeModule = !nodeModules;
+                boolean matched = !nodeModules;
+                File matchedTo = to;
+                for (JarArchive.Entry entry : archive.entries(searchPath)) {
+                    String webJarPath = entry.name.substring(fullPath.length());
+                    String[] nameVersion = webJarPath.split("/", 3);
+                    if (nameVersion.length == 3) {
+                        if (!filteredNodeModule) {
+                            String moduleId = getJarNodeModuleIdEntry(
+                                    archive,
+                                    fullPath + nameVersion[0] + "/" + nameVersion[1] + "/" + PACKAGE_JSON
+                                    );
+                            if (moduleId != null) {
+                                matchedTo = new File(to, moduleId);
+                                matched = true;
+                            }
+                            filteredNodeModule = true;
+                        }
+                        if (matched) {
+                            String relativeName = nameVersion[2];
+                            File copyTo = new File(matchedTo, relativeName);
+                            if (fingerprint != null) {
+                                fingerprint.keys.add(relativeName);
+                            }
+                            if (!skipped) {
+                                plan.shadowed += addCopy(copies,
+                                        new JarEntryCopy(archive, entry, copyTo, relativeName));
                             } else {
-                                log.debug("Found file entry {} where webjar version directory was expected in {}",
-                                        webJarPath, url);
+                                plan.shadowed += removeShadowed(copies, copyTo);
                             }
                         }
+                    } else {
+                        log.debug("Found file entry {} where webjar version directory was expected in {}",
+                                webJarPath, url);
                     }
-				} finally {
-					closeQuietly(jarFile);
-				}
+                }
 			} else if ("file".equals(url.getProtocol())) {
 				File file;
 				try {
@@ -143,7 +348,7 @@ public class WebJarExtractor {
 					throw new RuntimeException(e);
 				}
 				log.debug("Found file system webjar: {}", file);
-				File[] webjars = file.listFiles();
+				File[] webjars = name == null ? file.listFiles() : new File[] {new File(file, name)};
 				if (webjars != null) {
 					for (File webjar: webjars) {
 						if (webjar.isDirectory()) {
@@ -161,7 +366,7 @@ public class WebJarExtractor {
                                             }
                                         }
                                         if (matched) {
-										    copyDirectory(version, matchedTo, webjar.getName());
+										    plan.shadowed += findDirectoryCopies(version, matchedTo, webjar.getName(), copies);
                                         }
 									} else {
 										log.debug("Filesystem webjar version {} is not a directory", version);
@@ -181,22 +386,100 @@ public class WebJarExtractor {
 		}
 	}
 
-	private void ensureIsDirectory(File dir) {
-		if (dir.exists() && !dir.isDirectory()) {
+	private static int addCopy(Map<File, Copy> copies, Copy copy) {
+		int shadowed = removeShadowed(copies, copy.copyTo);
+		copies.put(copy.copyTo, copy);
+		return shadowed;
+	}
+
+	/*
+	 * Remove the copies that a file written to the given location replaces: the one to the location itself, and the
+	 * ones to the directories it is in, as a file in the way of a directory is deleted to create the directory.
+	 */
+	private static int removeShadowed(Map<File, Copy> copies, File copyTo) {
+		int shadowed = 0;
+		if (copies.remove(copyTo) != null) {
+			log.debug("{} is found more than once, only the last one found is copied", copyTo);
+			++shadowed;
+		}
+		for (File directory = copyTo.getParentFile(); directory != null; directory = directory.getParentFile()) {
+			if (copies.remove(directory) != null) {
+				log.debug("{} is replaced by a directory found later, so it is not copied", directory);
+				++shadowed;
+			}
+		}
+		return shadowed;
+	}
+
+	private void copyConcurrently(Collection<Copy> copies, ExecutorService executor) throws IOException {
+		List<Future<Void>> futures = new ArrayList<Future<Void>>(copies.size());
+		try {
+			for (Copy copy : copies) {
+				futures.add(executor.submit(copy));
+			}
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while extracting WebJars");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		} finally {
+			// The archives are closed once this returns, so no copy may be left running.
+			for (Future<Void> future : futures) {
+				future.cancel(false);
+			}
+			for (Future<Void> future : futures) {
+				try {
+					future.get();
+				} catch (CancellationException e) {
+					// Never started.
+				} catch (ExecutionException e) {
+					// Reported above, or superseded by the first failure.
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+	}
+
+	/*
+	 * Returns the number of directories created, including its parents.
+	 */
+	private static int ensureIsDirectory(File dir) {
+		if (dir.isDirectory()) {
+			log.debug("Destination directory {} didn't need creation", dir);
+			return 0;
+		}
+		int created = 0;
+		if (dir.exists()) {
 			log.debug("Destination directory is not a directory, deleting {}", dir);
 			// Delete the old file
 			boolean isDeleted = dir.delete();
             if (!isDeleted)     {
                 log.debug("Destination directory {} wasn't deleted", dir);
             }
+		} else if (dir.getParentFile() != null) {
+			created += ensureIsDirectory(dir.getParentFile());
 		}
-        boolean created = dir.mkdirs();
-        if (!created) {
-            log.debug("Destination directory {} didn't need creation", dir);
-        }
+		if (dir.mkdir()) {
+			++created;
+		} else {
+			log.debug("Destination directory {} wasn't created", dir);
+		}
+		return created;
 	}
 
-	private void copyDirectory(File dir, File to, String key) throws IOException {
+	private int findDirectoryCopies(File dir, File to, String key, Map<File, Copy> copies) {
+		int shadowed = 0;
 		File[] files = dir.listFiles();
 		if (files != null) {
 			for (File file: files) {
@@ -210,43 +493,100 @@ public class WebJarExtractor {
 				}
 
 				if (file.isDirectory()) {
-					copyDirectory(file, copyTo, relativeName);
+					shadowed += findDirectoryCopies(file, copyTo, relativeName, copies);
 				} else {
-					Cacheable forCache = new Cacheable(file.getPath(), file.lastModified());
-					log.debug("Checking whether {} is up to date at {}", relativeName, copyTo);
-					// Check for modification
-					if (!copyTo.exists() || !cache.isUpToDate(relativeName, forCache)) {
-
-						log.debug("Up to date check failed, copying {} to {}", relativeName, copyTo);
-						ensureIsDirectory(copyTo.getParentFile());
-						copyAndClose(new FileInputStream(file), copyTo);
-						cache.put(relativeName, forCache);
-					}
+					shadowed += addCopy(copies, new FileCopy(file, copyTo, relativeName));
 				}
 			}
 		}
+		return shadowed;
 	}
 
-	private void copyJarEntry(JarFile jarFile, JarEntry entry, File copyTo, String key) throws IOException {
-		Cacheable forCache = new Cacheable(entry.getName(), entry.getTime());
+	/*
+	 * A file to copy unless it is up to date.
+	 */
+	private abstract class Copy implements Callable<Void> {
+		final File copyTo;
+		final String key;
+		final Cacheable cacheable;
+
+		Copy(File copyTo, String key, Cacheable cacheable) {
+			this.copyTo = copyTo;
+			this.key = key;
+			this.cacheable = cacheable;
+		}
 
-		log.debug("Checking whether {} is up to date at {}", entry.getName(), copyTo);
+		/*
+		 * Write the contents of the file to the channel.
+		 */
+		abstract void transferTo(FileChannel target) throws IOException;
 
-		// Check for modification
-		if (!copyTo.exists() || !cache.isUpToDate(key, forCache)) {
+		/*
+		 * Write the file, its directory being there already.
+		 */
+		@Override
+		public Void call() throws IOException {
+			FileChannel target = new FileOutputStream(copyTo).getChannel();
+			try {
+				transferTo(target);
+			} finally {
+				closeQuietly(target);
+			}
+			cache.put(key, cacheable);
+			return null;
+		}
+	}
+
+	private final class FileCopy extends Copy {
+		private final File file;
+
+		FileCopy(File file, File copyTo, String key) {
+			super(copyTo, key, new Cacheable(file.getPath(), file.lastModified()));
+			this.file = file;
+		}
 
-			log.debug("Up to date check failed, copying {} to {}", entry.getName(), copyTo);
-			ensureIsDirectory(copyTo.getParentFile());
-			copyAndClose(jarFile.getInputStream(entry), copyTo);
-			cache.put(key, forCache);
+		@Override
+		void transferTo(FileChannel target) throws IOException {
+			FileChannel source = new FileInputStream(file).getChannel();
+			try {
+				// Lets the kernel copy the file where it can.
+				long size = source.size();
+				long transferred = 0;
+				while (transferred < size) {
+					long step = source.transferTo(transferred, size - transferred, target);
+					if (step == 0 && transferred >= source.size()) {
+						// The file was truncated while copying it, so the copy must not be cached.
+						throw new EOFException("Unexpected end of " + file);
+					}
+					transferred += step;
+				}
+			} finally {
+				closeQuietly(source);
+			}
 		}
 	}
 
-    private String getJarNodeModuleIdEntry(JarFile jarFile, String moduleIdPath) throws IOException {
+	private final class JarEntryCopy extends Copy {
+		private final JarArchive archive;
+		private final JarArchive.Entry entry;
+
+		JarEntryCopy(JarArchive archive, JarArchive.Entry entry, File copyTo, String key) {
+			super(copyTo, key, new Cacheable(entry.name, entry.lastModified, entry.crc, entry.size));
+			this.archive = archive;
+			this.entry = entry;
+		}
+
+		@Override
+		void transferTo(FileChannel target) throws IOException {
+			archive.transferTo(entry, target);
+		}
+	}
+
+    private String getJarNodeModuleIdEntry(JarArchive archive, String moduleIdPath) throws IOException {
         String moduleId = null;
-        ZipEntry entry = jarFile.getEntry(moduleIdPath);
+        JarArchive.Entry entry = archive.entry(moduleIdPath);
         if (entry != null) {
-            String packageJson = copyAndClose(jarFile.getInputStream(entry));
+            String packageJson = copyAndClose(archive.getInputStream(entry));
             moduleId = getJsonNodeModuleId(packageJson);
         }
         return moduleId;
@@ -285,8 +625,74 @@ public class WebJarExtractor {
         return moduleId;
     }
 
+    /**
+     * What an extraction did.
+     */
+    public static final class Report {
+        private final int filesWritten;
+        private final int filesUpToDate;
+        private final int filesShadowed;
+        private final int directoriesCreated;
+        private final int archivesSkipped;
+
+        Report(int filesWritten, int filesUpToDate, int filesShadowed, int directoriesCreated, int archivesSkipped) {
+            this.filesWritten = filesWritten;
+            this.filesUpToDate = filesUpToDate;
+            this.filesShadowed = filesShadowed;
+            this.directoriesCreated = directoriesCreated;
+            this.archivesSkipped = archivesSkipped;
+        }
+
+        /**
+         * @return The number of files written.
+         */
+        public int getFilesWritten() {
+            return filesWritten;
+        }
+
+        /**
+         * @return The number of files left alone, as they were up to date.
+         */
+        public int getFilesUpToDate() {
+            return filesUpToDate;
+        }
+
+        /**
+         * @return The number of files not written, as a WebJar found later on the class path holds a file for the
+         *         same location or files below it.
+         */
+        public int getFilesShadowed() {
+            return filesShadowed;
+        }
+
+        /**
+         * @return The number of directories created.
+         */
+        public int getDirectoriesCreated() {
+            return directoriesCreated;
+        }
+
+        /**
+         * @return The number of jar files skipped, as they hadn't changed since they were last extracted. Their files
+         *         are not counted as up to date. Jar files are only skipped if the extractor was asked to.
+         */
+        public int getArchivesSkipped() {
+            return archivesSkipped;
+        }
+
+        @Override
+        public String toString() {
+            return filesWritten + " files written, " + filesUpToDate + " files up to date, " + filesShadowed
+                    + " files shadowed, " + directoriesCreated + " directories created, " + archivesSkipped
+                    + " jar files skipped";
+        }
+    }
+
     /**
      * A cache for extracting WebJar assets.
+     *
+     * When extracting concurrently, the cache is called from several threads at once, so it needs to be thread safe
+     * then.
      */
 	public interface Cache {
 		/**
@@ -305,6 +711,32 @@ public class WebJarExtractor {
 		 * @param cacheable The cacheable.
 		 */
 		public void put(String key, Cacheable cacheable);
+
+		/**
+		 * Whether the files extracted from a jar file are all up to date, so that the jar file can be skipped without
+		 * opening it. This is asked with the path, size and last modified time of the jar file first, and, if that
+		 * fails, with the CRC-32 of its central directory too. A cache that keeps track of the files in use needs to
+		 * consider the files put for the jar file in use when it is up to date. Caches that don't record jar files
+		 * never skip any. Jar files are only looked up, and put, if the extractor is to skip unchanged ones.
+		 *
+		 * @param key The key of the jar file, which also identifies what is extracted from it and where to.
+		 * @param archive The fingerprint of the jar file.
+		 * @return Whether the jar file is up to date.
+		 * @see Cacheable#isSameArchiveAs(Cacheable)
+		 */
+		public default boolean isArchiveUpToDate(String key, Cacheable archive) {
+			return false;
+		}
+
+		/**
+		 * Put the given jar file in the cache, once all files extracted from it are up to date.
+		 *
+		 * @param key The key to put it at.
+		 * @param archive The fingerprint of the jar file, including the CRC-32 of its central directory.
+		 * @param keys The keys of the files extracted from it.
+		 */
+		public default void putArchive(String key, Cacheable archive, Collection<String> keys) {
+		}
 	}
 
 	private static class NoCache implements Cache {
@@ -318,30 +750,60 @@ public class WebJarExtractor {
 	public static Cache NO_CACHE = new NoCache();
 
 	/**
-	 * An in memory cache.
+	 * An in memory cache. The cache is thread safe.
 	 */
 	public static class MemoryCache implements Cache {
 
-		private final Map<String, Cacheable> cache = new HashMap<String, Cacheable>();
+		private final Map<String, Cacheable> cache = new ConcurrentHashMap<String, Cacheable>();
+		private final Map<String, Cacheable> archives = new ConcurrentHashMap<String, Cacheable>();
 
 		public boolean isUpToDate(String key, Cacheable cacheable) {
-			return cacheable.equals(cache.get(key));
+			return cacheable.isUpToDateWith(cache.get(key));
 		}
 
 		@Override
 		public void put(String key, Cacheable cacheable) {
 			cache.put(key, cacheable);
 		}
+
+		@Override
+		public boolean isArchiveUpToDate(String key, Cacheable archive) {
+			return archive.isSameArchiveAs(archives.get(key));
+		}
+
+		@Override
+		public void putArchive(String key, Cacheable archive, Collection<String> keys) {
+			archives.put(key, archive);
+		}
 	}
 
 
+	/**
+	 * What an extracted file was extracted from. Files extracted from jar files also record the CRC-32 and size of
+	 * their contents, as found in the central directory of the jar file, so that files with the same contents are
+	 * known to be up to date even if they come from a rebuilt jar file.
+	 */
 	public static final class Cacheable {
 		private final String path;
 		private final long lastModified;
+		private final long crc;
+		private final long size;
 
 		public Cacheable(String path, long lastModified) {
+			this(path, lastModified, -1, -1);
+		}
+
+		/**
+		 * @param path The path of the source.
+		 * @param lastModified The time the source was last modified.
+		 * @param crc The CRC-32 of the contents, or -1 if unknown.
+		 * @param size The size of the contents, or -1 if unknown.
+		 */
+		public Cacheable(String path, long lastModified, long crc, long size) {
 			this.path = path;
 			this.lastModified = lastModified;
+			this.crc = crc;
+			this.size = size;
 		}
 
 		public String getPath() {
@@ -352,6 +814,56 @@ public class WebJarExtractor {
 			return lastModified;
 		}
 
+		/**
+		 * @return The CRC-32 of the contents, or -1 if unknown.
+		 */
+		public long getCrc() {
+			return crc;
+		}
+
+		/**
+		 * @return The size of the contents, or -1 if unknown.
+		 */
+		public long getSize() {
+			return size;
+		}
+
+		/**
+		 * Whether a file extracted from the given cacheable is up to date with this one. If the contents of both are
+		 * known, then they need to have the same CRC-32 and size, no matter where they come from or when they were
+		 * last modified. Otherwise, they need to be equal.
+		 *
+		 * @param cached The cacheable the file was extracted from, or null.
+		 * @return Whether the file is up to date.
+		 */
+		public boolean isUpToDateWith(Cacheable cached) {
+			if (cached == null) {
+				return false;
+			}
+			if (size >= 0 && cached.size >= 0) {
+				return size == cached.size && crc == cached.crc;
+			}
+			return equals(cached);
+		}
+
+		/**
+		 * Whether this jar file is the same as the given one. If the CRC-32 of the central directory of both is known,
+		 * then they need to have the same one and the same size, as the central directory lists the CRC-32 of every
+		 * entry. Otherwise, they need to have the same path, size and last modified time.
+		 *
+		 * @param cached The jar file that was extracted, or null.
+		 * @return Whether the jar file is the same.
+		 */
+		public boolean isSameArchiveAs(Cacheable cached) {
+			if (cached == null) {
+				return false;
+			}
+			if (crc >= 0 && cached.crc >= 0) {
+				return size == cached.size && crc == cached.crc;
+			}
+			return path.equals(cached.path) && lastModified == cached.lastModified && size == cached.size;
+		}
+
 		@Override
 		public boolean equals(Object o) {
 			if (this == o) return true;
@@ -359,7 +871,8 @@ public class WebJarExtractor {
 
 			Cacheable cacheable = (Cacheable) o;
 
-			return (lastModified == cacheable.lastModified) && path.equals(cacheable.path);
+			return (lastModified == cacheable.lastModified) && path.equals(cacheable.path)
+					&& crc == cacheable.crc && size == cacheable.size;
 
         }
 
@@ -367,27 +880,12 @@ public class WebJarExtractor {
 		public int hashCode() {
 			int result = path.hashCode();
 			result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+			result = 31 * result + (int) (crc ^ (crc >>> 32));
+			result = 31 * result + (int) (size ^ (size >>> 32));
 			return result;
 		}
 	}
 
-	private static void copyAndClose(InputStream source, File to) throws IOException {
-		OutputStream dest = new FileOutputStream(to);
-		try {
-			byte[] buffer = new byte[8192];
-			int read = source.read(buffer);
-			while (read > 0) {
-				dest.write(buffer, 0, read);
-				read = source.read(buffer);
-			}
-			dest.flush();
-		} finally {
-			closeQuietly(source);
-			closeQuietly(dest);
-		}
-
-	}
-
 	private static String copyAndClose(InputStream source) throws IOException {
 		StringBuilder sb = new StringBuilder();
 	    final Reader is = new InputStreamReader(source, "UTF-8");
@@ -0,0 +1,143 @@
+package org.webjars;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.webjars.CloseQuietly.closeQuietly;
+import static org.webjars.WebJarAssetLocator.WEBJARS_INDEX_PATH;
+import static org.webjars.WebJarAssetLocator.WEBJARS_PATH_PREFIX;
+
+/**
+ * Generates the precomputed index of the webjar resources of a directory at build time, typically the classes
+ * directory of a WebJar or of an application before it gets packaged. {@link WebJarAssetLocator} reads the index
+ * written to {@value WebJarAssetLocator#WEBJARS_INDEX_PATH} instead of enumerating the contents of the jar file it
+ * belongs to. While the directory itself is on the class path, e.g. when running from an IDE, the index is ignored and
+ * the directory is listed, so that files added after the index was written are found as well.
+ *
+ * The index is a UTF-8 encoded text file listing one resource path per line, relative to
+ * {@value WebJarAssetLocator#WEBJARS_PATH_PREFIX}. Empty lines and lines starting with '#' are ignored.
+ *
+ * The generator can be run from a Maven build with the exec-maven-plugin, in the process-classes phase:
+ * <pre>{@code
+ * <plugin>
+ *     <groupId>org.codehaus.mojo</groupId>
+ *     <artifactId>exec-maven-plugin</artifactId>
+ *     <version>1.2.1</version>
+ *     <executions>
+ *         <execution>
+ *             <phase>process-classes</phase>
+ *             <goals>
+ *                 <goal>java</goal>
+ *             </goals>
+ *         </execution>
+ *     </executions>
+ *     <configuration>
+ *         <mainClass>org.webjars.WebJarIndexGenerator</mainClass>
+ *         <arguments>
+ *             <argument>${project.build.outputDirectory}</argument>
+ *         </arguments>
+ *         <includePluginDependencies>true</includePluginDependencies>
+ *     </configuration>
+ *     <dependencies>
+ *         <dependency>
+ *             <groupId>org.webjars</groupId>
+ *             <artifactId>webjars-locator</artifactId>
+ *             <version>${webjars-locator.version}</version>
+ *         </dependency>
+ *     </dependencies>
+ * </plugin>
+ * }</pre>
+ * or from the command line:
+ * <pre>
+ *     java -cp webjars-locator.jar org.webjars.WebJarIndexGenerator target/classes
+ * </pre>
+ */
+public class WebJarIndexGenerator {
+
+	private static final Logger log = LoggerFactory.getLogger(WebJarIndexGenerator.class);
+
+	/**
+	 * Write the index of every directory given as argument, see {@link #generate(String...)}. Exits with status 1 if
+	 * no directory is given.
+	 *
+	 * @param args The directories to index, e.g. target/classes.
+	 */
+	public static void main(String[] args) throws IOException {
+		try {
+			generate(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Write the index of every directory given.
+	 *
+	 * @param directories The directories to index, e.g. target/classes.
+	 * @throws IllegalArgumentException If no directory is given.
+	 * @throws IOException If an index could not be written.
+	 */
+	public static void generate(String... directories) throws IOException {
+		if (directories.length == 0) {
+			throw new IllegalArgumentException("Usage: " + WebJarIndexGenerator.class.getName() + " <directory>...");
+		}
+		for (String directory : directories) {
+			Set<String> assetPaths = generate(new File(directory));
+			log.info("Indexed {} webjar resources in {}", assetPaths.size(), directory);
+		}
+	}
+
+	/**
+	 * Write the index of the webjar resources found in the given directory.
+	 *
+	 * @param directory The directory to index. This is the root of the class path entry, not the webjars directory.
+	 * @return The indexed resource paths, relative to {@value WebJarAssetLocator#WEBJARS_PATH_PREFIX}.
+	 * @throws IOException If the index could not be written.
+	 */
+	public static Set<String> generate(File directory) throws IOException {
+		File webJarsDirectory = new File(directory, WEBJARS_PATH_PREFIX);
+		File index = new File(directory, WEBJARS_INDEX_PATH);
+		Set<String> assetPaths = new TreeSet<String>();
+		if (!webJarsDirectory.isDirectory()) {
+			log.debug("{} contains no webjars, not writing an index", directory);
+			return assetPaths;
+		}
+		aggregateChildren(webJarsDirectory, "", assetPaths);
+		assetPaths.remove(index.getName());
+
+		Writer writer = new OutputStreamWriter(new FileOutputStream(index), "UTF-8");
+		try {
+			writer.write("# Generated by " + WebJarIndexGenerator.class.getName() + "\n");
+			for (String assetPath : assetPaths) {
+				writer.write(assetPath + "\n");
+			}
+			writer.flush();
+		} finally {
+			closeQuietly(writer);
+		}
+		return assetPaths;
+	}
+
+	private static void aggregateChildren(File dir, String relativePath, Set<String> assetPaths) {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				String relativeName = relativePath + file.getName();
+				if (file.isDirectory()) {
+					aggregateChildren(file, relativeName + "/", assetPaths);
+				} else {
+					assetPaths.add(relativeName);
+				}
+			}
+		}
+	}
+}
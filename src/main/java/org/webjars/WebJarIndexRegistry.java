@@ -0,0 +1,252 @@
+package org.webjars;
+
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * The sources and indexes of the class path, shared by all locators and extractors of a class loader, so that jar
+ * files are scanned once only and each index is held in memory once only. Indexes are kept per filter, for the
+ * {@value #MAX_INDEXES} filters used last. Class loaders are weakly referenced, so they can still be unloaded along
+ * with everything that was found through them.
+ *
+ * The contents of directories on the class path change during development. Each time an index is asked for, the
+ * directories are fingerprinted by the modification times of their subdirectories, without holding any lock. The
+ * index is shared as long as the fingerprint is unchanged. Otherwise the directories are scanned again and the
+ * resources only found in them are added to or removed from the index, which keeps track of them, but not of the
+ * resources of jar files.
+ *
+ * Only single class loaders are registered. Sources and indexes of several class loaders are found anew each time.
+ * URLs added to a {@link URLClassLoader} or any of its parents after it was registered are noticed, and the class
+ * loader is registered anew. This doesn't cover the application class loader of Java 9 and later, which isn't a
+ * {@link URLClassLoader}. Other changes to the class path, such as a jar file that was replaced, are only noticed
+ * once the class loader is {@link #invalidate(ClassLoader[]) invalidated}, see
+ * {@link WebJarAssetLocator#invalidateCache(ClassLoader...)}. The class is thread safe.
+ */
+final class WebJarIndexRegistry {
+
+    static final int MAX_INDEXES = 8;
+
+    private static final Map<ClassLoader, Entry> entries = new WeakHashMap<ClassLoader, Entry>();
+
+    private WebJarIndexRegistry() {
+    }
+
+    /**
+     * @param classLoaders the class loaders to be considered for loading the resources from.
+     * @return the distinct sources found through the class loaders.
+     */
+    static List<WebJarSource> sources(final ClassLoader[] classLoaders) {
+        final Entry entry = entry(classLoaders);
+        return entry == null ? WebJarSource.list(classLoaders) : entry.sources(classLoaders);
+    }
+
+    /**
+     * @param filterExpr   the regular expression to be used to filter resources that will be included in the index.
+     * @param classLoaders the class loaders to be considered for loading the resources from.
+     * @return the index of the resources found through the class loaders.
+     */
+    static AssetIndex index(final Pattern filterExpr, final ClassLoader[] classLoaders) {
+        final Entry entry = entry(classLoaders);
+        return entry == null ? index(filterExpr, WebJarSource.list(classLoaders)) : entry.index(filterExpr, classLoaders);
+    }
+
+    /**
+     * Forget the sources and indexes of the class loaders, so that they are found anew the next time they are needed.
+     *
+     * @param classLoaders the class loaders, or none to forget the sources and indexes of all class loaders.
+     */
+    static void invalidate(final ClassLoader[] classLoaders) {
+        synchronized (entries) {
+            if (classLoaders.length == 0) {
+                entries.clear();
+            }
+            // Each of them may have been registered on its own.
+            for (final ClassLoader classLoader : classLoaders) {
+                entries.remove(classLoader);
+            }
+        }
+    }
+
+    private static Entry entry(final ClassLoader[] classLoaders) {
+        if (classLoaders.length != 1) {
+            return null;
+        }
+        final int urlCount = urlCount(classLoaders[0]);
+        synchronized (entries) {
+            Entry entry = entries.get(classLoaders[0]);
+            if (entry == null || entry.urlCount != urlCount) {
+                entry = new Entry(urlCount);
+                entries.put(classLoaders[0], entry);
+            }
+            return entry;
+        }
+    }
+
+    /*
+     * URLs can only be added to a URLClassLoader, so their number tells whether its class path has changed. Other
+     * class loaders, such as the application class loader of Java 9 and later, don't count, so changes to their class
+     * path go unnoticed until they are invalidated.
+     */
+    private static int urlCount(final ClassLoader classLoader) {
+        int urlCount = 0;
+        for (ClassLoader loader = classLoader; loader != null; loader = loader.getParent()) {
+            if (loader instanceof URLClassLoader) {
+                urlCount += ((URLClassLoader) loader).getURLs().length;
+            }
+        }
+        return urlCount;
+    }
+
+    private static AssetIndex index(final Pattern filterExpr, final List<WebJarSource> sources) {
+        final AssetIndex.Builder builder = new AssetIndex.Builder();
+        for (final WebJarSource source : sources) {
+            source.assetPaths(null, filterExpr, null, builder);
+        }
+        return builder.build();
+    }
+
+    /*
+     * Directories may change at any time.
+     */
+    private static boolean isDirectory(final WebJarSource source) {
+        return "file".equals(source.url.getProtocol());
+    }
+
+    private static long fingerprint(final List<WebJarSource> sources) {
+        long fingerprint = 0;
+        for (final WebJarSource source : sources) {
+            fingerprint = 31 * fingerprint + source.fingerprint();
+        }
+        return fingerprint;
+    }
+
+    private static Set<String> assetPaths(final Pattern filterExpr, final List<WebJarSource> sources,
+                                          final boolean directories) {
+        final Set<String> assetPaths = new HashSet<String>();
+        final Consumer<String> collector = new Consumer<String>() {
+            @Override
+            public void accept(final String assetPath) {
+                assetPaths.add(assetPath);
+            }
+        };
+        for (final WebJarSource source : sources) {
+            if (isDirectory(source) == directories) {
+                source.assetPaths(null, filterExpr, null, collector);
+            }
+        }
+        return assetPaths;
+    }
+
+    private static String[] sorted(final Collection<String> assetPaths) {
+        final String[] sorted = assetPaths.toArray(new String[assetPaths.size()]);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /*
+     * What was found through a class loader. It must not reference the class loader, which is the weak key it is kept
+     * at, so the class loader is passed to it instead.
+     */
+    private static final class Entry {
+        private final int urlCount;
+        private List<WebJarSource> sources;
+        // The indexes used last, in access order.
+        private final Map<String, Indexed> indexes = new LinkedHashMap<String, Indexed>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Indexed> eldest) {
+                return size() > MAX_INDEXES;
+            }
+        };
+
+        Entry(final int urlCount) {
+            this.urlCount = urlCount;
+        }
+
+        synchronized List<WebJarSource> sources(final ClassLoader[] classLoaders) {
+            if (sources == null) {
+                sources = WebJarSource.list(classLoaders);
+            }
+            return sources;
+        }
+
+        AssetIndex index(final Pattern filterExpr, final ClassLoader[] classLoaders) {
+            final String key = filterExpr.flags() + ":" + filterExpr.pattern();
+            final List<WebJarSource> sources = sources(classLoaders);
+            final long fingerprint = fingerprint(sources);
+            synchronized (this) {
+                Indexed indexed = indexes.get(key);
+                if (indexed == null || indexed.fingerprint != fingerprint) {
+                    indexed = indexed == null ? Indexed.build(filterExpr, sources, fingerprint)
+                            : indexed.rescan(filterExpr, sources, fingerprint);
+                    indexes.put(key, indexed);
+                }
+                return indexed.index;
+            }
+        }
+    }
+
+    /*
+     * An index along with the fingerprint of the directories it was built from, and the resources only found in
+     * them, sorted. The others were found in jar files, so they stay the same.
+     */
+    private static final class Indexed {
+        final AssetIndex index;
+        final long fingerprint;
+        final String[] onlyInDirectories;
+
+        Indexed(final AssetIndex index, final long fingerprint, final String[] onlyInDirectories) {
+            this.index = index;
+            this.fingerprint = fingerprint;
+            this.onlyInDirectories = onlyInDirectories;
+        }
+
+        static Indexed build(final Pattern filterExpr, final List<WebJarSource> sources, final long fingerprint) {
+            final Set<String> inJars = assetPaths(filterExpr, sources, false);
+            final Set<String> onlyInDirectories = assetPaths(filterExpr, sources, true);
+            final AssetIndex.Builder builder = new AssetIndex.Builder();
+            for (final String assetPath : inJars) {
+                builder.accept(assetPath);
+            }
+            for (final String assetPath : onlyInDirectories) {
+                builder.accept(assetPath);
+            }
+            onlyInDirectories.removeAll(inJars);
+            return new Indexed(builder.build(), fingerprint, sorted(onlyInDirectories));
+        }
+
+        /*
+         * Apply what changed in the directories since the index was built. The resources found in them that the index
+         * doesn't hold yet are added, and the ones that were only found in them and no longer are get removed.
+         */
+        Indexed rescan(final Pattern filterExpr, final List<WebJarSource> sources, final long fingerprint) {
+            final Set<String> inDirectories = assetPaths(filterExpr, sources, true);
+            final List<String> added = new ArrayList<String>();
+            final List<String> removed = new ArrayList<String>();
+            final List<String> onlyInDirectories = new ArrayList<String>();
+            for (final String assetPath : this.onlyInDirectories) {
+                if (!inDirectories.contains(assetPath)) {
+                    removed.add(assetPath);
+                }
+            }
+            for (final String assetPath : inDirectories) {
+                if (!index.contains(assetPath)) {
+                    added.add(assetPath);
+                    onlyInDirectories.add(assetPath);
+                } else if (Arrays.binarySearch(this.onlyInDirectories, assetPath) >= 0) {
+                    onlyInDirectories.add(assetPath);
+                }
+            }
+            return new Indexed(index.with(added, removed), fingerprint, sorted(onlyInDirectories));
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.webjars;
+
+import java.io.*;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.webjars.CloseQuietly.closeQuietly;
+
+/**
+ * A snapshot of the resource paths found in jar files, backed by a file on the filesystem. Each jar file is recorded
+ * with its path, size and last modification time, so that an unchanged jar file doesn't need to be scanned again
+ * when the index is built the next time. See
+ * {@link WebJarAssetLocator#getFullPathIndex(java.util.regex.Pattern, java.util.concurrent.ExecutorService, WebJarIndexSnapshot, ClassLoader...)}.
+ *
+ * Directories are not recorded, because their modification time doesn't reflect changes further down the tree.
+ *
+ * Like {@link FileSystemCache}, the snapshot expects that every jar file is looked up on each use, and only saves
+ * the jar files that have been looked up or put since it was last loaded. The class is thread safe.
+ */
+public class WebJarIndexSnapshot {
+
+	private final File snapshot;
+
+	private Map<String, Entry> onFile;
+	private Map<String, Entry> touched;
+	private boolean dirty;
+
+	public WebJarIndexSnapshot(File snapshot) throws IOException {
+		this.snapshot = snapshot;
+		reset();
+	}
+
+	/**
+	 * Return the resource paths recorded for the given jar file, if it hasn't changed since and was scanned with the
+	 * same filter.
+	 *
+	 * @param jar The jar file.
+	 * @param filterExpr The filter the jar file is scanned with.
+	 * @return The recorded resource paths, or null if the jar file needs to be scanned.
+	 */
+	synchronized Set<String> get(File jar, Pattern filterExpr) {
+		String key = jar.getAbsolutePath();
+		Entry entry = touched.get(key);
+		if (entry == null) {
+			entry = onFile.get(key);
+		}
+		if (entry != null && entry.isUpToDate(jar, filterExpr)) {
+			touched.put(key, entry);
+			return entry.assetPaths;
+		}
+		return null;
+	}
+
+	/**
+	 * Record the resource paths found in the given jar file. The size and last modification time are the ones the jar
+	 * file had before it was scanned, so that a jar file rewritten while it is scanned is scanned again next time.
+	 *
+	 * @param jar The jar file.
+	 * @param size The size of the jar file before it was scanned.
+	 * @param lastModified The last modification time of the jar file before it was scanned.
+	 * @param filterExpr The filter the jar file was scanned with.
+	 * @param assetPaths The resource paths found.
+	 */
+	synchronized void put(File jar, long size, long lastModified, Pattern filterExpr, Set<String> assetPaths) {
+		touched.put(jar.getAbsolutePath(), new Entry(size, lastModified, filter(filterExpr),
+				Collections.unmodifiableSet(new HashSet<String>(assetPaths))));
+		dirty = true;
+	}
+
+	/*
+	 * The filter as recorded, along with its flags. Line terminators and backslashes are escaped, so that the filter
+	 * takes a single line.
+	 */
+	private static String filter(Pattern filterExpr) {
+		return filterExpr.flags() + ":" + filterExpr.pattern().replace("\\", "\\\\").replace("\n", "\\n")
+				.replace("\r", "\\r");
+	}
+
+	public synchronized void save() throws IOException {
+		if (dirty || onFile.size() != touched.size()) {
+			Writer writer = new OutputStreamWriter(new FileOutputStream(snapshot), "UTF-8");
+			try {
+				for (Map.Entry<String, Entry> item : touched.entrySet()) {
+					Entry entry = item.getValue();
+					writer.write("@" + entry.size + ":" + entry.lastModified + ":" + item.getKey() + "\n");
+					writer.write("=" + entry.filter + "\n");
+					for (String assetPath : entry.assetPaths) {
+						writer.write("\t" + assetPath + "\n");
+					}
+				}
+				writer.flush();
+			} finally {
+				closeQuietly(writer);
+			}
+		}
+		onFile = touched;
+		touched = new HashMap<String, Entry>();
+		dirty = false;
+	}
+
+	public synchronized void reset() throws IOException {
+		onFile = new HashMap<String, Entry>();
+		if (snapshot.exists()) {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(snapshot), "UTF-8"));
+			try {
+				String key = null;
+				long size = 0;
+				long lastModified = 0;
+				String filter = null;
+				Set<String> assetPaths = null;
+				String line = reader.readLine();
+				while (line != null) {
+					if (line.startsWith("@")) {
+						if (key != null && filter != null) {
+							onFile.put(key, new Entry(size, lastModified, filter, Collections.unmodifiableSet(assetPaths)));
+						}
+						key = null;
+						filter = null;
+						assetPaths = new HashSet<String>();
+						String[] splitted = line.substring(1).split(":", 3);
+						if (splitted.length == 3) {
+							try {
+								size = Long.parseLong(splitted[0]);
+								lastModified = Long.parseLong(splitted[1]);
+								key = splitted[2];
+							} catch (NumberFormatException e) {
+								// Ignore
+							}
+						}
+					} else if (line.startsWith("=") && assetPaths != null) {
+						filter = line.substring(1);
+					} else if (line.startsWith("\t") && assetPaths != null) {
+						assetPaths.add(line.substring(1));
+					}
+					line = reader.readLine();
+				}
+				if (key != null && filter != null) {
+					onFile.put(key, new Entry(size, lastModified, filter, Collections.unmodifiableSet(assetPaths)));
+				}
+			} finally {
+				closeQuietly(reader);
+			}
+		}
+		touched = new HashMap<String, Entry>();
+		dirty = false;
+	}
+
+	private static final class Entry {
+		private final long size;
+		private final long lastModified;
+		private final String filter;
+		private final Set<String> assetPaths;
+
+		private Entry(long size, long lastModified, String filter, Set<String> assetPaths) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.filter = filter;
+			this.assetPaths = assetPaths;
+		}
+
+		private boolean isUpToDate(File jar, Pattern filterExpr) {
+			return size == jar.length() && lastModified == jar.lastModified() && filter.equals(filter(filterExpr));
+		}
+	}
+}
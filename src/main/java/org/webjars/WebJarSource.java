@@ -0,0 +1,390 @@
+package org.webjars;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import static org.webjars.CloseQuietly.closeQuietly;
+import static org.webjars.WebJarAssetLocator.WEBJARS_INDEX_PATH;
+import static org.webjars.WebJarAssetLocator.WEBJARS_PATH_PREFIX;
+
+/**
+ * A directory, jar file or jar file nested in another one that holds the
+ * {@value WebJarAssetLocator#WEBJARS_PATH_PREFIX} directory, as found on the class path.
+ *
+ * Every source has a canonical key that identifies the underlying file, no matter through which class loader it was
+ * found or how its URL is spelled, so that each of them is scanned once only. Unlike {@link URL#equals(Object)} and
+ * {@link URL#hashCode()}, computing the key never resolves host names.
+ */
+abstract class WebJarSource {
+
+    private static final String INDEX_NAME = WEBJARS_INDEX_PATH.substring(WEBJARS_PATH_PREFIX.length());
+
+    /*
+     * How many levels below the WebJars directory of a directory on the class path resources are found, unless given
+     * otherwise. Unlimited unless set by the system property, as links back to a directory that is being walked are
+     * detected.
+     */
+    static final int DEFAULT_MAX_DIRECTORY_DEPTH = Math.max(1,
+            Integer.getInteger("org.webjars.maxDirectoryDepth", Integer.MAX_VALUE));
+
+    final String key;
+    final URL url;
+
+    private WebJarSource(final String key, final URL url) {
+        this.key = key;
+        this.url = url;
+    }
+
+    /**
+     * @param classLoaders the class loaders to be considered for loading the resources from.
+     * @return the distinct sources found through the class loaders, in the order they are found.
+     */
+    static List<WebJarSource> list(final ClassLoader[] classLoaders) {
+        return list(classLoaders, DEFAULT_MAX_DIRECTORY_DEPTH);
+    }
+
+    /**
+     * @param classLoaders      the class loaders to be considered for loading the resources from.
+     * @param maxDirectoryDepth how many levels below the WebJars directory of a directory resources are found.
+     * @return the distinct sources found through the class loaders, in the order they are found.
+     */
+    static List<WebJarSource> list(final ClassLoader[] classLoaders, final int maxDirectoryDepth) {
+        final Map<String, URL> indexUrls = new HashMap<String, URL>();
+        for (final URL indexUrl : WebJarAssetLocator.listParentURLsWithResource(classLoaders, WEBJARS_INDEX_PATH)) {
+            final String indexKey = key(indexUrl);
+            indexUrls.put(indexKey.substring(0, indexKey.length() - INDEX_NAME.length()), indexUrl);
+        }
+
+        final List<WebJarSource> sources = new ArrayList<WebJarSource>();
+        for (final URL url : WebJarAssetLocator.listParentURLsWithResource(classLoaders, WEBJARS_PATH_PREFIX)) {
+            final String key = key(url);
+            // Directories are listed even if they hold an index, which would hide files added since it was written.
+            final URL indexUrl = "file".equals(url.getProtocol()) ? null : indexUrls.get(key);
+            if (indexUrl != null) {
+                sources.add(new Indexed(key, url, indexUrl));
+            } else if ("file".equals(url.getProtocol())) {
+                sources.add(new Directory(key, url, maxDirectoryDepth));
+            } else if ("jar".equals(url.getProtocol())) {
+                sources.add(new Jar(key, url));
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Return the sources holding the given WebJar, only asking the class loaders for its directory. Jar files and
+     * directories that don't hold the WebJar are never opened. Precomputed indexes are not used, as the subtree of the
+     * WebJar is all that is scanned anyway. Jar files need to have an entry for the directory of the WebJar to be
+     * found, which they have unless they were built without directory entries.
+     *
+     * @param classLoaders the class loaders to be considered for loading the resources from.
+     * @param webJar       the name of the WebJar.
+     * @return the distinct sources holding the WebJar, in the order they are found.
+     */
+    static List<WebJarSource> list(final ClassLoader[] classLoaders, final String webJar) {
+        final List<WebJarSource> sources = new ArrayList<WebJarSource>();
+        for (final URL webJarUrl : WebJarAssetLocator.listParentURLsWithResource(classLoaders,
+                WEBJARS_PATH_PREFIX + "/" + webJar + "/")) {
+            final String spec = webJarUrl.toExternalForm();
+            final int end = spec.lastIndexOf(WEBJARS_PATH_PREFIX + "/") + WEBJARS_PATH_PREFIX.length();
+            final URL url;
+            try {
+                url = new URL(spec.substring(0, end));
+            } catch (MalformedURLException e) {
+                throw new RuntimeException(e);
+            }
+            if ("file".equals(url.getProtocol())) {
+                sources.add(new Directory(key(url), url, DEFAULT_MAX_DIRECTORY_DEPTH));
+            } else if ("jar".equals(url.getProtocol())) {
+                sources.add(new Jar(key(url), url));
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Return the canonical key of a resource URL. The key of a "file:" URL is the canonical path of the file, the one
+     * of a "jar:" URL is the canonical path of the outermost jar file followed by the path within it. Other URLs are
+     * keyed by their external form.
+     *
+     * @param url the URL.
+     * @return the key.
+     */
+    static String key(final URL url) {
+        final String key;
+        if ("file".equals(url.getProtocol())) {
+            key = "file:" + canonicalPath(file(url));
+        } else if ("jar".equals(url.getProtocol()) && url.getPath().startsWith("file:")) {
+            final String path = url.getPath();
+            final int separator = path.indexOf("!/");
+            key = separator < 0 ? url.toExternalForm()
+                    : "jar:" + canonicalPath(new File(URI.create(path.substring(0, separator)))) + path.substring(separator);
+        } else {
+            key = url.toExternalForm();
+        }
+        return key.endsWith("/") ? key.substring(0, key.length() - 1) : key;
+    }
+
+    private static File file(final URL url) {
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException e) {
+            return new File(url.getPath());
+        } catch (IllegalArgumentException e) {
+            return new File(url.getPath());
+        }
+    }
+
+    private static String canonicalPath(final File file) {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException e) {
+            return file.getAbsolutePath();
+        }
+    }
+
+    /**
+     * Pass the resource paths of the source that match the given expression to the consumer, one at a time as they are
+     * found.
+     *
+     * @param webJar     the name of the WebJar to return the resource paths of, or null for all of them.
+     * @param filterExpr the regular expression to be used to filter resources.
+     * @param snapshot   the snapshot of previously scanned jar files, or null.
+     * @param assetPaths the consumer of the resource paths.
+     */
+    abstract void assetPaths(String webJar, Pattern filterExpr, WebJarIndexSnapshot snapshot,
+                             Consumer<String> assetPaths);
+
+    /**
+     * @return the names of the WebJars of the source, as found in the &lt;prefix&gt;/&lt;name&gt;/&lt;version&gt;/
+     *         layout, without collecting their resource paths.
+     */
+    abstract Set<String> webJarNames();
+
+    /**
+     * @return a value that changes whenever resources are added to or deleted from the source. Only directories
+     *         change, the contents of jar files are fixed once they are on the class path.
+     */
+    long fingerprint() {
+        return 0;
+    }
+
+    private static String prefix(final String webJar) {
+        return webJar == null ? WEBJARS_PATH_PREFIX : WEBJARS_PATH_PREFIX + "/" + webJar + "/";
+    }
+
+    private static void addWebJarName(final String path, final Set<String> names) {
+        final String name = AssetIndex.webJarName(path);
+        if (name != null) {
+            names.add(name);
+        }
+    }
+
+    /*
+     * A jar file that ships a precomputed index, which is used instead of scanning its contents.
+     */
+    private static final class Indexed extends WebJarSource {
+        private final URL indexUrl;
+
+        Indexed(final String key, final URL url, final URL indexUrl) {
+            super(key, url);
+            this.indexUrl = indexUrl;
+        }
+
+        @Override
+        void assetPaths(final String webJar, final Pattern filterExpr, final WebJarIndexSnapshot snapshot,
+                        final Consumer<String> assetPaths) {
+            final String prefix = prefix(webJar);
+            final AssetFilter filter = AssetFilter.of(filterExpr);
+            BufferedReader reader = null;
+            try {
+                reader = new BufferedReader(new InputStreamReader(indexUrl.openStream(), "UTF-8"));
+                String line = reader.readLine();
+                while (line != null) {
+                    if (!line.isEmpty() && !line.startsWith("#")) {
+                        final String assetPathCandidate = WEBJARS_PATH_PREFIX + "/" + line;
+                        if (assetPathCandidate.startsWith(prefix) && filter.accepts(assetPathCandidate)) {
+                            assetPaths.accept(assetPathCandidate);
+                        }
+                    }
+                    line = reader.readLine();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            } finally {
+                closeQuietly(reader);
+            }
+        }
+
+        @Override
+        Set<String> webJarNames() {
+            final Set<String> names = new HashSet<String>();
+            assetPaths(null, Pattern.compile(".*"), null, new Consumer<String>() {
+                @Override
+                public void accept(final String assetPath) {
+                    addWebJarName(assetPath, names);
+                }
+            });
+            return names;
+        }
+    }
+
+    private static final class Directory extends WebJarSource {
+        private final File directory;
+        private final int maxDepth;
+
+        Directory(final String key, final URL url, final int maxDepth) {
+            super(key, url);
+            this.directory = file(url);
+            this.maxDepth = maxDepth;
+        }
+
+        @Override
+        void assetPaths(final String webJar, final Pattern filterExpr, final WebJarIndexSnapshot snapshot,
+                        final Consumer<String> assetPaths) {
+            final File file = webJar == null ? directory : new File(directory, webJar);
+            if (!file.exists()) {
+                return;
+            }
+            final AssetFilter filter = AssetFilter.of(filterExpr);
+            final String prefix = webJar == null ? WEBJARS_PATH_PREFIX + "/" : prefix(webJar);
+            final Path root = file.toPath();
+            final int rootLength = root.toString().length() + 1;
+            // The depth is counted from the directory holding the WebJars.
+            new DirectoryWalker(webJar == null ? maxDepth : maxDepth - 1).walk(root,
+                    new Consumer<Path>() {
+                        @Override
+                        public void accept(final Path child) {
+                            final String relativePath = prefix + child.toString().substring(rootLength).replace('\\', '/');
+                            if (!WEBJARS_INDEX_PATH.equals(relativePath) && filter.accepts(relativePath)) {
+                                assetPaths.accept(relativePath);
+                            }
+                        }
+                    });
+        }
+
+        @Override
+        long fingerprint() {
+            return directory.exists() ? new DirectoryWalker(maxDepth).fingerprint(directory.toPath()) : 0;
+        }
+
+        @Override
+        Set<String> webJarNames() {
+            final Set<String> names = new HashSet<String>();
+            final File[] webJarDirs = directory.listFiles();
+            if (webJarDirs != null) {
+                for (final File webJarDir : webJarDirs) {
+                    final File[] versionDirs = webJarDir.listFiles();
+                    if (versionDirs != null) {
+                        for (final File versionDir : versionDirs) {
+                            if (versionDir.isDirectory()) {
+                                names.add(webJarDir.getName());
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+            return names;
+        }
+    }
+
+    /*
+     * A jar file, possibly nested in other jar files.
+     */
+    private static final class Jar extends WebJarSource {
+        /*
+         * The jar file, or null if it is nested. Nested jar files are not recorded in snapshots, as they don't have a
+         * size and time of their own.
+         */
+        private final File file;
+
+        Jar(final String key, final URL url) {
+            super(key, url);
+            final String path = url.getPath();
+            this.file = JarArchive.isNested(url) ? null : new File(URI.create(path.substring(0, path.indexOf("!"))));
+        }
+
+        @Override
+        void assetPaths(final String webJar, final Pattern filterExpr, final WebJarIndexSnapshot snapshot,
+                        final Consumer<String> assetPaths) {
+            final boolean snapshotted = snapshot != null && webJar == null && file != null;
+            if (snapshotted) {
+                final Set<String> snapshotAssetPaths = snapshot.get(file, filterExpr);
+                if (snapshotAssetPaths != null) {
+                    for (final String assetPath : snapshotAssetPaths) {
+                        assetPaths.accept(assetPath);
+                    }
+                    return;
+                }
+            }
+
+            final AssetFilter filter = AssetFilter.of(filterExpr);
+            // The snapshot needs the resource paths of the jar file on their own, and its size and time from before
+            // the scan.
+            final Set<String> recorded = snapshotted ? new HashSet<String>() : null;
+            final long size = snapshotted ? file.length() : 0;
+            final long lastModified = snapshotted ? file.lastModified() : 0;
+            final JarArchive archive = open();
+            try {
+                for (final JarArchive.Entry entry : archive.entries(prefix(webJar))) {
+                    final String assetPathCandidate = entry.name;
+                    if (!WEBJARS_INDEX_PATH.equals(assetPathCandidate)
+                            && filter.accepts(assetPathCandidate)) {
+                        assetPaths.accept(assetPathCandidate);
+                        if (recorded != null) {
+                            recorded.add(assetPathCandidate);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            } finally {
+                // Littering is bad for the environment.
+                closeQuietly(archive);
+            }
+            if (snapshotted) {
+                snapshot.put(file, size, lastModified, filterExpr, recorded);
+            }
+        }
+
+        @Override
+        Set<String> webJarNames() {
+            final Set<String> names = new HashSet<String>();
+            final JarArchive archive = open();
+            try {
+                for (final JarArchive.Entry entry : archive.entries(WEBJARS_PATH_PREFIX + "/")) {
+                    addWebJarName(entry.name, names);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            } finally {
+                closeQuietly(archive);
+            }
+            return names;
+        }
+
+        private JarArchive open() {
+            try {
+                return JarArchive.open(url);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
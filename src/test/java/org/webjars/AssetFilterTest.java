@@ -0,0 +1,68 @@
+package org.webjars;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class AssetFilterTest {
+
+    private static final List<String> PATHS = Arrays.asList(
+            "META-INF/resources/webjars/jquery/1.8.3/jquery.js",
+            "META-INF/resources/webjars/jquery/1.8.3/jquery.min.js",
+            "META-INF/resources/webjars/bootstrap/2.2.2/css/bootstrap.css",
+            "META-INF/resources/webjars/bootstrap/2.2.2/img/glyphicons.png",
+            "META-INF/resources/webjars/a.js",
+            "META-INF/resources/webjars/",
+            "js",
+            ".js",
+            "a.b",
+            "");
+
+    @Test
+    public void should_accept_the_same_paths_as_the_pattern() {
+        for (String expr : Arrays.asList(
+                ".*",
+                "",
+                ".*\\.js",
+                ".*\\.(js|css)",
+                ".*(?:\\.js|\\.css|)",
+                "META-INF/resources/webjars/jquery/.*",
+                "\\QMETA-INF/resources/webjars/\\E.*\\Q.js\\E",
+                "META-INF/resources/webjars/.*/1\\.8\\.3/.*\\.js",
+                "META-INF/resources/webjars/[^/]*",
+                "a.b",
+                "a\\.b",
+                ".*js?",
+                ".*\\.js$",
+                ".*\\.(js|c.s)",
+                "(?i).*\\.JS",
+                ".*\\.(?i:JS)",
+                ".*\\d\\.js")) {
+            AssetFilter filter = AssetFilter.of(Pattern.compile(expr));
+            for (String path : PATHS) {
+                assertEquals(expr + " " + path, Pattern.compile(expr).matcher(path).matches(), filter.accepts(path));
+            }
+        }
+    }
+
+    @Test
+    public void should_build_filters() {
+        assertTrue(AssetFilter.of(AssetFilters.prefix("META-INF/resources/webjars/jquery/")).accepts(PATHS.get(0)));
+        assertFalse(AssetFilter.of(AssetFilters.prefix("META-INF/resources/webjars/jquery/")).accepts(PATHS.get(2)));
+        assertTrue(AssetFilter.of(AssetFilters.suffixes(".js", ".css")).accepts(PATHS.get(2)));
+        assertFalse(AssetFilter.of(AssetFilters.suffixes(".js", ".css")).accepts(PATHS.get(3)));
+        assertTrue(AssetFilters.suffixes("a\\E.js").matcher("a\\E.js").matches());
+
+        Pattern glob = AssetFilters.glob("META-INF/resources/webjars/*/?.?.?/*.js");
+        assertTrue(AssetFilter.of(glob).accepts(PATHS.get(0)));
+        assertFalse(AssetFilter.of(glob).accepts(PATHS.get(2)));
+        assertFalse(AssetFilter.of(glob).accepts(PATHS.get(4)));
+        assertTrue(AssetFilter.of(AssetFilters.glob("**/*.css")).accepts(PATHS.get(2)));
+    }
+}
@@ -0,0 +1,156 @@
+package org.webjars;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+public class AssetPathTrieTest {
+
+    private final AssetPathTrie trie = AssetPathTrie.of(Arrays.asList(
+            "a/1.0/js/a.js",
+            "a/1.0/css/a.css",
+            "a/2.0/js/a.js",
+            "b/1.0/js/b.js",
+            "b/1.0/js/ab.js",
+            "js/b.js"));
+
+    @Test
+    public void should_find_unique_matches() {
+        assertEquals("a/1.0/css/a.css", find("a.css"));
+        assertEquals("a/1.0/js/a.js", find("1.0/js/a.js"));
+        assertEquals("b/1.0/js/b.js", find("1.0/js/b.js"));
+        assertEquals("b/1.0/js/ab.js", find("ab.js"));
+    }
+
+    @Test
+    public void should_report_multiple_matches() {
+        assertSame(AssetPathTrie.MULTIPLE_MATCHES, find("a.js"));
+        assertSame(AssetPathTrie.MULTIPLE_MATCHES, find("js/a.js"));
+    }
+
+    @Test
+    public void should_only_match_whole_segments() {
+        assertNull(find("b.css"));
+        assertNull(find(".css"));
+        assertNull(find("0/js/a.js"));
+        assertNull(find("c/1.0/css/a.css"));
+    }
+
+    @Test
+    public void should_not_match_asset_paths_without_further_segments() {
+        assertNull(find("a/1.0/css/a.css"));
+        assertEquals("b/1.0/js/b.js", find("js/b.js"));
+    }
+
+    @Test
+    public void should_ignore_leading_and_trailing_slashes() {
+        assertEquals("a/1.0/css/a.css", find("/a.css"));
+        assertEquals("a/1.0/css/a.css", find("css/a.css/"));
+        assertNull(find("//a.css"));
+        assertNull(find("css//a.css"));
+        assertSame(AssetPathTrie.MULTIPLE_MATCHES, find("/"));
+    }
+
+    @Test
+    public void should_only_consider_asset_paths_with_the_prefix() {
+        assertEquals("b/1.0/js/b.js", trie.find("b.js", "b/"));
+        assertEquals("a/2.0/js/a.js", trie.find("js/a.js", "a/2.0/"));
+        assertSame(AssetPathTrie.MULTIPLE_MATCHES, trie.find("a.js", "a/"));
+        assertNull(trie.find("a.css", "b/"));
+        assertNull(trie.find("ab.js", "a/"));
+        assertEquals("b/1.0/js/ab.js", trie.find("ab.js", "b/"));
+    }
+
+    @Test
+    public void should_list_all_asset_paths() {
+        assertEquals(6, trie.size());
+        assertEquals(6, new HashSet<String>(trie.assetPaths()).size());
+    }
+
+    private String find(String partialPath) {
+        return trie.find(partialPath);
+    }
+
+    @Test
+    public void should_add_and_remove_asset_paths_without_changing_the_original() {
+        AssetPathTrie changed = trie.with("c/1.0/js/a.js").with("a/1.0/css/b.css").without("a/1.0/css/a.css");
+
+        assertEquals(7, changed.size());
+        assertSame(AssetPathTrie.MULTIPLE_MATCHES, changed.find("1.0/js/a.js"));
+        assertEquals("a/1.0/css/b.css", changed.find("css/b.css"));
+        assertNull(changed.find("a.css"));
+        assertEquals("a/1.0/css/a.css", find("a.css"));
+        assertEquals("a/1.0/js/a.js", find("1.0/js/a.js"));
+
+        AssetPathTrie restored = changed.without("c/1.0/js/a.js").without("a/1.0/css/b.css").with("a/1.0/css/a.css");
+        assertEquals(6, restored.size());
+        assertEquals("a/1.0/js/a.js", restored.find("1.0/js/a.js"));
+        assertSame(restored, restored.with("a/1.0/css/a.css").without("unknown.js"));
+    }
+
+    @Test
+    public void building_should_not_allocate_more_than_the_trie_needs() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        List<String> assetPaths = new ArrayList<String>();
+        for (int webJar = 0; webJar < 100; ++webJar) {
+            for (int asset = 0; asset < 400; ++asset) {
+                assetPaths.add("META-INF/resources/webjars/webjar" + webJar + "/1.0." + (asset % 4) + "/js/dir"
+                        + (asset % 20) + "/asset" + asset + ".js");
+            }
+        }
+        long threadId = Thread.currentThread().getId();
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        AssetPathTrie built = AssetPathTrie.of(assetPaths);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(assetPaths.size(), built.size());
+        // Building a tree map per node took about 1000 bytes per asset path, the trie itself takes less than 100.
+        assertTrue(allocated / assetPaths.size() + " bytes per asset path", allocated < 300L * assetPaths.size());
+    }
+
+    @Test
+    public void building_should_match_adding_one_at_a_time() {
+        List<String> assetPaths = Arrays.asList("a/1.0/js/a.js", "js/a.js", "a.js", "/a.js", "b/a.js", "a/b/a.js",
+                "1.0/js/a.js", "a/1.0/js/b.js", "a/1.0/css/a.js");
+        AssetPathTrie built = AssetPathTrie.of(assetPaths);
+        AssetPathTrie added = AssetPathTrie.of(new ArrayList<String>());
+        for (String assetPath : assetPaths) {
+            added = added.with(assetPath);
+        }
+
+        assertEquals(new HashSet<String>(assetPaths), new HashSet<String>(built.assetPaths()));
+        for (String assetPath : assetPaths) {
+            for (int i = assetPath.indexOf('/'); i >= 0; i = assetPath.indexOf('/', i + 1)) {
+                String partialPath = assetPath.substring(i + 1);
+                assertSame(partialPath, added.find(partialPath), built.find(partialPath));
+            }
+        }
+    }
+
+    @Test
+    public void building_should_drop_duplicates() {
+        AssetPathTrie built = AssetPathTrie.of(Arrays.asList(
+                "a/1.0/js/a.js",
+                "b/1.0/js/a.js",
+                "a/1.0/js/a.js",
+                "c/1.0/css/c.css"));
+        assertEquals(3, built.size());
+        assertEquals("c/1.0/css/c.css", built.find("c.css"));
+        assertSame(AssetPathTrie.MULTIPLE_MATCHES, built.find("1.0/js/a.js"));
+        assertEquals(0, AssetPathTrie.of(new ArrayList<String>()).size());
+    }
+}
@@ -0,0 +1,93 @@
+package org.webjars;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DirectoryWalkerTest {
+
+    private Path root;
+
+    @Before
+    public void createTree() throws Exception {
+        root = Files.createTempDirectory("directorywalkertest");
+        Path directory = root;
+        for (int i = 0; i < 8; ++i) {
+            Files.write(directory.resolve("file" + i), new byte[0]);
+            directory = Files.createDirectory(directory.resolve("dir" + i));
+        }
+        // A link back to the root must not make the walk go round in circles.
+        Files.createSymbolicLink(root.resolve("dir0/loop"), root);
+    }
+
+    @Test
+    public void should_find_files_deeper_than_five_levels() {
+        Set<String> files = walk(new DirectoryWalker(Integer.MAX_VALUE));
+        assertEquals(8, files.size());
+        assertTrue(files.contains(root.resolve("dir0/dir1/dir2/dir3/dir4/dir5/dir6/file7").toString()));
+    }
+
+    @Test
+    public void should_stop_at_the_max_depth() {
+        assertEquals(3, walk(new DirectoryWalker(3)).size());
+    }
+
+    @Test
+    public void should_find_the_same_files_in_a_fork_join_pool() throws Exception {
+        final DirectoryWalker walker = new DirectoryWalker(Integer.MAX_VALUE);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(walk(walker), pool.submit(new Callable<Set<String>>() {
+                @Override
+                public Set<String> call() {
+                    return walk(walker);
+                }
+            }).get());
+            assertEquals(walk(new DirectoryWalker(3)), pool.submit(new Callable<Set<String>>() {
+                @Override
+                public Set<String> call() {
+                    return walk(new DirectoryWalker(3));
+                }
+            }).get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private Set<String> walk(DirectoryWalker walker) {
+        final Set<String> files = new HashSet<String>();
+        walker.walk(root, new Consumer<Path>() {
+            @Override
+            public void accept(Path file) {
+                files.add(file.toString());
+            }
+        });
+        return files;
+    }
+
+    @After
+    public void deleteTree() {
+        delete(root.toFile());
+    }
+
+    private static void delete(File file) {
+        if (file.isDirectory() && !Files.isSymbolicLink(file.toPath())) {
+            for (File child : file.listFiles()) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
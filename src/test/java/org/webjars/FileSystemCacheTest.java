@@ -4,6 +4,7 @@ import org.junit.After;
 import org.junit.Test;
 
 import java.io.File;
+import java.util.Collections;
 
 import static org.junit.Assert.*;
 import static org.webjars.WebJarExtractor.Cacheable;
@@ -62,6 +63,43 @@ public class FileSystemCacheTest {
 		assertFalse(cache.isUpToDate("bar", c2));
 	}
 
+	@Test
+	public void cacheShouldCompareContentsWhereKnown() throws Exception {
+		FileSystemCache cache = new FileSystemCache(createTmpFile());
+		cache.put("foo", new Cacheable("META-INF/resources/webjars/foo/1.0/foo.js", 123, 42, 1000));
+		cache.put("bar", c2);
+		cache.save();
+		cache = new FileSystemCache(createTmpFile());
+		assertTrue(cache.isUpToDate("foo", new Cacheable("META-INF/resources/webjars/foo/1.1/foo.js", 456, 42, 1000)));
+		assertFalse(cache.isUpToDate("foo", new Cacheable("META-INF/resources/webjars/foo/1.0/foo.js", 123, 43, 1000)));
+		assertFalse(cache.isUpToDate("foo", new Cacheable("META-INF/resources/webjars/foo/1.0/foo.js", 123)));
+		assertTrue(cache.isUpToDate("bar", c2));
+	}
+
+	@Test
+	public void cacheShouldPersistJarFilesAlongWithTheirFiles() throws Exception {
+		Cacheable jar = new Cacheable("/lib/foo.jar", 123, 42, 1000);
+		FileSystemCache cache = new FileSystemCache(createTmpFile());
+		cache.put("foo", c1);
+		cache.put("bar", c2);
+		cache.putArchive("foo.jar: to /tmp", jar, Collections.singletonList("foo"));
+		cache.save();
+
+		cache = new FileSystemCache(createTmpFile());
+		assertFalse(cache.isArchiveUpToDate("foo.jar: to /tmp", new Cacheable("/lib/foo.jar", 124, -1, 1000)));
+		assertTrue(cache.isArchiveUpToDate("foo.jar: to /tmp", new Cacheable("/lib/foo.jar", 123, -1, 1000)));
+		cache.save();
+
+		// The files of an up to date jar file are kept, the others are not.
+		cache = new FileSystemCache(createTmpFile());
+		assertTrue(cache.isUpToDate("foo", c1));
+		assertFalse(cache.isUpToDate("bar", c2));
+		// A jar file that was touched still has the same central directory.
+		assertTrue(cache.isArchiveUpToDate("foo.jar: to /tmp", new Cacheable("/lib/foo.jar", 456, 42, 1000)));
+		assertFalse(cache.isArchiveUpToDate("foo.jar: to /tmp", new Cacheable("/lib/foo.jar", 456, 43, 1000)));
+		assertFalse(cache.isArchiveUpToDate("bar.jar: to /tmp", jar));
+	}
+
 	private File createTmpFile() throws Exception {
 		if (tmpFile == null) {
 			tmpFile = File.createTempFile("filesystemcache-", ".cache");
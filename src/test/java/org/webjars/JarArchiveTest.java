@@ -0,0 +1,292 @@
+package org.webjars;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+import static org.webjars.CloseQuietly.closeQuietly;
+import static org.webjars.WebJarAssetLocator.WEBJARS_PATH_PREFIX;
+
+public class JarArchiveTest {
+
+	private static final String PREFIX = WEBJARS_PATH_PREFIX + "/archive/1.0.0/";
+
+	private File jarFile;
+
+	@Test
+	public void entriesShouldOnlyListFilesWithPrefix() throws Exception {
+		createJar();
+		JarArchive archive = JarArchive.open(jarFile);
+		try {
+			List<String> names = new ArrayList<String>();
+			for (JarArchive.Entry entry : archive.entries(WEBJARS_PATH_PREFIX + "/")) {
+				names.add(entry.name);
+			}
+			assertEquals(Arrays.asList(PREFIX + "stored.js", PREFIX + "deflated.js", PREFIX + "ünicode.js"), names);
+			assertTrue(archive.entries("unknown/").isEmpty());
+			assertNull(archive.entry(PREFIX + "stored"));
+		} finally {
+			closeQuietly(archive);
+		}
+	}
+
+	@Test
+	public void entriesShouldMatchJarFile() throws Exception {
+		createJar();
+		JarArchive archive = JarArchive.open(jarFile);
+		JarFile reference = new JarFile(jarFile);
+		try {
+			for (JarArchive.Entry entry : archive.entries(PREFIX)) {
+				ZipEntry referenceEntry = reference.getEntry(entry.name);
+				assertEquals(referenceEntry.getMethod(), entry.method);
+				assertEquals(referenceEntry.getTime(), entry.lastModified);
+				assertEquals(referenceEntry.getCrc(), entry.crc);
+				assertEquals(referenceEntry.getSize(), entry.size);
+				assertEquals(referenceEntry.getCompressedSize(), entry.compressedSize);
+				assertArrayEquals(read(reference.getInputStream(referenceEntry)), read(archive.getInputStream(entry)));
+			}
+		} finally {
+			closeQuietly(archive);
+			reference.close();
+		}
+	}
+
+	@Test
+	public void transferToShouldWriteTheUncompressedContents() throws Exception {
+		createJar();
+		byte[] inner = read(new FileInputStream(jarFile));
+		JarArchive archive = JarArchive.open(jarFile);
+		try {
+			for (JarArchive.Entry entry : archive.entries(PREFIX)) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				archive.transferTo(entry, Channels.newChannel(out));
+				assertArrayEquals(read(archive.getInputStream(entry)), out.toByteArray());
+			}
+		} finally {
+			closeQuietly(archive);
+		}
+
+		createOuterJar(inner);
+		for (String nested : new String[] {"stored.jar", "deflated.jar"}) {
+			archive = JarArchive.open(new URL("jar:" + jarFile.toURI() + "!/BOOT-INF/lib/" + nested + "!/"));
+			try {
+				JarArchive.Entry entry = archive.entry(PREFIX + "stored.js");
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				archive.transferTo(entry, Channels.newChannel(out));
+				assertEquals(content("stored.js"), new String(out.toByteArray(), "UTF-8"));
+			} finally {
+				closeQuietly(archive);
+			}
+		}
+	}
+
+	@Test
+	public void entriesShouldBeFoundWithPrependedData() throws Exception {
+		createJar();
+		byte[] jar = read(new FileInputStream(jarFile));
+		FileOutputStream out = new FileOutputStream(jarFile);
+		try {
+			out.write(new byte[1000]);
+			out.write(jar);
+		} finally {
+			out.close();
+		}
+
+		JarArchive archive = JarArchive.open(jarFile);
+		try {
+			JarArchive.Entry entry = archive.entry(PREFIX + "deflated.js");
+			assertEquals(content("deflated.js"), new String(read(archive.getInputStream(entry)), "UTF-8"));
+		} finally {
+			closeQuietly(archive);
+		}
+	}
+
+	@Test(expected = EOFException.class)
+	public void truncatedEntriesShouldBeReported() throws Exception {
+		// The comment ends the file, so a local header found in it is cut short.
+		createJar("PK\u0003\u0004abcdef");
+		byte[] jar = read(new FileInputStream(jarFile));
+		for (int i = 0; i < jar.length - 46; ++i) {
+			if (jar[i] == 'P' && jar[i + 1] == 'K' && jar[i + 2] == 1 && jar[i + 3] == 2) {
+				int nameLength = (jar[i + 28] & 0xff) | (jar[i + 29] & 0xff) << 8;
+				if (new String(jar, i + 46, nameLength, "UTF-8").equals(PREFIX + "stored.js")) {
+					int offset = jar.length - 10;
+					for (int b = 0; b < 4; ++b) {
+						jar[i + 42 + b] = (byte) (offset >>> (8 * b));
+					}
+				}
+			}
+		}
+		FileOutputStream out = new FileOutputStream(jarFile);
+		try {
+			out.write(jar);
+		} finally {
+			out.close();
+		}
+
+		JarArchive archive = JarArchive.open(jarFile);
+		try {
+			archive.transferTo(archive.entry(PREFIX + "stored.js"), Channels.newChannel(new ByteArrayOutputStream()));
+		} finally {
+			closeQuietly(archive);
+		}
+	}
+
+	@Test(expected = ZipException.class)
+	public void openShouldRejectOtherFiles() throws Exception {
+		jarFile = File.createTempFile("jararchivetest-", ".jar");
+		RandomAccessFile file = new RandomAccessFile(jarFile, "rw");
+		try {
+			file.write(new byte[100]);
+		} finally {
+			file.close();
+		}
+		JarArchive.open(jarFile).close();
+	}
+
+	@Test
+	public void nestedJarsShouldBeReadInPlace() throws Exception {
+		createJar();
+		byte[] inner = read(new FileInputStream(jarFile));
+		createOuterJar(inner);
+
+		for (String nested : new String[] {"stored.jar", "deflated.jar"}) {
+			JarArchive archive = JarArchive.open(new URL("jar:" + jarFile.toURI() + "!/BOOT-INF/lib/" + nested + "!/"
+					+ WEBJARS_PATH_PREFIX));
+			try {
+				assertEquals(3, archive.entries(WEBJARS_PATH_PREFIX + "/").size());
+				JarArchive.Entry entry = archive.entry(PREFIX + "deflated.js");
+				assertEquals(content("deflated.js"), new String(read(archive.getInputStream(entry)), "UTF-8"));
+			} finally {
+				closeQuietly(archive);
+			}
+		}
+	}
+
+	@Test
+	public void locatorShouldIndexNestedJars() throws Exception {
+		createJar();
+		createOuterJar(read(new FileInputStream(jarFile)));
+		final URL nestedUrl = new URL("jar:" + jarFile.toURI() + "!/BOOT-INF/lib/stored.jar!/" + WEBJARS_PATH_PREFIX);
+		ClassLoader classLoader = new ClassLoader(null) {
+			@Override
+			public Enumeration<URL> getResources(String name) {
+				return Collections.enumeration(WEBJARS_PATH_PREFIX.equals(name)
+						? Collections.singleton(nestedUrl) : Collections.<URL>emptySet());
+			}
+		};
+
+		assertTrue(JarArchive.isNested(nestedUrl));
+		assertEquals(PREFIX + "stored.js",
+				new WebJarAssetLocator(WebJarAssetLocator.getFullPathIndex(Pattern.compile(".*"), classLoader))
+						.getFullPath("stored.js"));
+	}
+
+	private void createOuterJar(byte[] inner) throws Exception {
+		JarOutputStream jar = new JarOutputStream(new FileOutputStream(jarFile));
+		try {
+			ZipEntry storedEntry = new ZipEntry("BOOT-INF/lib/stored.jar");
+			storedEntry.setMethod(ZipEntry.STORED);
+			storedEntry.setSize(inner.length);
+			CRC32 crc = new CRC32();
+			crc.update(inner);
+			storedEntry.setCrc(crc.getValue());
+			jar.putNextEntry(storedEntry);
+			jar.write(inner);
+			jar.closeEntry();
+
+			jar.putNextEntry(new ZipEntry("BOOT-INF/lib/deflated.jar"));
+			jar.write(inner);
+			jar.closeEntry();
+		} finally {
+			jar.close();
+		}
+	}
+
+	private void createJar() throws Exception {
+		createJar(null);
+	}
+
+	private void createJar(String comment) throws Exception {
+		jarFile = File.createTempFile("jararchivetest-", ".jar");
+		JarOutputStream jar = new JarOutputStream(new FileOutputStream(jarFile));
+		try {
+			jar.setComment(comment);
+			jar.putNextEntry(new ZipEntry("org/webjars/Some.class"));
+			jar.write(new byte[] {1, 2, 3});
+			jar.closeEntry();
+			jar.putNextEntry(new ZipEntry(PREFIX));
+			jar.closeEntry();
+
+			byte[] stored = content("stored.js").getBytes("UTF-8");
+			ZipEntry storedEntry = new ZipEntry(PREFIX + "stored.js");
+			storedEntry.setMethod(ZipEntry.STORED);
+			storedEntry.setSize(stored.length);
+			CRC32 crc = new CRC32();
+			crc.update(stored);
+			storedEntry.setCrc(crc.getValue());
+			jar.putNextEntry(storedEntry);
+			jar.write(stored);
+			jar.closeEntry();
+
+			for (String name : new String[] {"deflated.js", "ünicode.js"}) {
+				jar.putNextEntry(new ZipEntry(PREFIX + name));
+				jar.write(content(name).getBytes("UTF-8"));
+				jar.closeEntry();
+			}
+		} finally {
+			jar.close();
+		}
+	}
+
+	private static String content(String name) {
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 1000; ++i) {
+			content.append(name).append(i);
+		}
+		return content.toString();
+	}
+
+	private static byte[] read(InputStream in) throws Exception {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1000];
+			int read = in.read(buffer);
+			while (read >= 0) {
+				out.write(buffer, 0, read);
+				read = in.read(buffer);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	@After
+	public void deleteJar() {
+		if (jarFile != null) {
+			jarFile.delete();
+		}
+	}
+}
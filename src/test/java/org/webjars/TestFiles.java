@@ -0,0 +1,71 @@
+package org.webjars;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Creates and deletes the files that tests put into a {@link org.junit.rules.TemporaryFolder}.
+ */
+final class TestFiles {
+
+	private TestFiles() {
+	}
+
+	/**
+	 * Create a file holding its own path, along with its parent directories.
+	 */
+	static File createFile(File root, String path) throws IOException {
+		File file = new File(root, path);
+		file.getParentFile().mkdirs();
+		Writer writer = new FileWriter(file);
+		try {
+			writer.write(path);
+		} finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	/**
+	 * Package the META-INF directory below the root into the jar file.
+	 */
+	static File createJar(File jar, File root) throws IOException {
+		JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+		try {
+			addEntries(out, new File(root, "META-INF"), "META-INF/");
+		} finally {
+			out.close();
+		}
+		return jar;
+	}
+
+	private static void addEntries(JarOutputStream out, File dir, String path) throws IOException {
+		out.putNextEntry(new JarEntry(path));
+		out.closeEntry();
+		for (File file : dir.listFiles()) {
+			if (file.isDirectory()) {
+				addEntries(out, file, path + file.getName() + "/");
+			} else {
+				out.putNextEntry(new JarEntry(path + file.getName()));
+				out.write(Files.readAllBytes(file.toPath()));
+				out.closeEntry();
+			}
+		}
+	}
+
+	static void deleteDir(File dir) {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				deleteDir(file);
+			}
+		}
+		dir.delete();
+	}
+}
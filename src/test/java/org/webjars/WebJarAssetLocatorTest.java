@@ -2,11 +2,30 @@ package org.webjars;
 
 import static org.hamcrest.core.IsCollectionContaining.hasItems;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 import org.junit.Test;
 
@@ -129,11 +148,349 @@ public class WebJarAssetLocatorTest {
         }
     }
 
+    @Test
+    public void should_look_up_within_a_webjar() {
+        WebJarAssetLocator locator = new WebJarAssetLocator();
+
+        assertEquals("META-INF/resources/webjars/jquery/1.8.3/jquery.js", locator.getFullPath("jquery", "jquery.js"));
+        assertEquals("META-INF/resources/webjars/multiple/2.0.0/multiple.js", locator.getFullPath("multiple", "2.0.0/multiple.js"));
+        try {
+            locator.getFullPath("bootstrap", "jquery.js");
+            fail("Exception should have been thrown!");
+        } catch (MultipleMatchesException e) {
+            fail("jquery.js is not part of bootstrap");
+        } catch (IllegalArgumentException e) {
+            assertEquals("jquery.js could not be found. Make sure you've added the corresponding WebJar and please check for typos.", e.getMessage());
+        }
+        try {
+            locator.getFullPath("multiple", "multiple.js");
+            fail("Exception should have been thrown!");
+        } catch (MultipleMatchesException e) {
+            assertEquals("Multiple matches found for multiple.js. Please provide a more specific path, for example by including a version number.", e.getMessage());
+        }
+    }
+
+    @Test
+    public void should_list_assets_of_a_webjar() {
+        WebJarAssetLocator locator = new WebJarAssetLocator();
+
+        Set<String> assets = locator.listWebJarAssets("multiple");
+        assertEquals(4, assets.size());
+        assertThat(assets, hasItems("META-INF/resources/webjars/multiple/1.0.0/multiple.js",
+                "META-INF/resources/webjars/multiple/2.0.0/module/multiple_module.js"));
+        assertEquals(locator.listAssets("/jquery/"), locator.listWebJarAssets("jquery"));
+        assertTrue(locator.listWebJarAssets("unknown").isEmpty());
+    }
+
+    @Test
+    public void should_list_assets_of_a_webjar_outside_of_its_versions() {
+        SortedMap<String, String> index = new TreeMap<String, String>();
+        for (String fullPath : Arrays.asList("META-INF/resources/webjars/foo/-readme.txt",
+                "META-INF/resources/webjars/foo/1.0.0/foo.js", "META-INF/resources/webjars/readme.txt")) {
+            index.put(fullPath, fullPath);
+        }
+        WebJarAssetLocator locator = new WebJarAssetLocator(index);
+
+        assertEquals(new HashSet<String>(Arrays.asList("META-INF/resources/webjars/foo/-readme.txt",
+                "META-INF/resources/webjars/foo/1.0.0/foo.js")), locator.listWebJarAssets("foo"));
+        assertEquals("META-INF/resources/webjars/foo/-readme.txt", locator.getFullPath("foo", "-readme.txt"));
+        assertTrue(locator.listWebJarAssets("readme.txt").isEmpty());
+    }
+
+    @Test
+    public void find_full_path_should_report_status_without_throwing() {
+        WebJarAssetLocator locator = new WebJarAssetLocator();
+
+        WebJarAssetLocator.LookupResult found = locator.findFullPath("jquery.js");
+        assertTrue(found.isFound());
+        assertEquals("META-INF/resources/webjars/jquery/1.8.3/jquery.js", found.getFullPath());
+
+        WebJarAssetLocator.LookupResult missing = locator.findFullPath("asset-unknown.js");
+        assertEquals(WebJarAssetLocator.LookupResult.Status.MISSING, missing.getStatus());
+        assertNull(missing.getFullPath());
+
+        WebJarAssetLocator.LookupResult ambiguous = locator.findFullPath("multiple.js");
+        assertEquals(WebJarAssetLocator.LookupResult.Status.AMBIGUOUS, ambiguous.getStatus());
+        assertNull(ambiguous.getFullPath());
+    }
+
+    @Test
+    public void locators_of_class_loaders_should_remember_misses() {
+        ClassLoader classLoader = WebJarAssetLocator.class.getClassLoader();
+        WebJarAssetLocator locator = new WebJarAssetLocator(Pattern.compile(".*"), 16, classLoader);
+
+        assertFalse(locator.findFullPath("asset-unknown.js").isFound());
+        assertTrue(locator.index.get().missCache.contains("asset-unknown.js"));
+        // The shared index has no miss cache of its own.
+        assertNull(new WebJarAssetLocator(Pattern.compile(".*"), classLoader).index.get().missCache);
+
+        WebJarAssetLocator lazy = WebJarAssetLocator.lazy(Pattern.compile(".*"), 16, classLoader);
+        assertFalse(lazy.findFullPath("asset-unknown.js").isFound());
+        assertTrue(lazy.index.get().missCache.contains("asset-unknown.js"));
+    }
+
+    @Test
+    public void should_remember_misses() {
+        WebJarAssetLocator locator = new WebJarAssetLocator(new WebJarAssetLocator().getFullPathIndex(), 16);
+
+        assertFalse(locator.findFullPath("asset-unknown.js").isFound());
+        assertTrue(locator.index.get().missCache.contains("asset-unknown.js"));
+        assertFalse(locator.findFullPath("asset-unknown.js").isFound());
+        assertTrue(locator.findFullPath("jquery.js").isFound());
+        assertFalse(locator.index.get().missCache.contains("jquery.js"));
+        try {
+            locator.getFullPath("asset-unknown.js");
+            fail("Exception should have been thrown!");
+        } catch (IllegalArgumentException e) {
+            assertEquals("asset-unknown.js could not be found. Make sure you've added the corresponding WebJar and please check for typos.", e.getMessage());
+        }
+    }
+
     @Test
     public void should_list_assets_in_folder() {
         String fullPathPrefix = "META-INF/resources/webjars/multiple/1.0.0/";
         Set<String> assets = new WebJarAssetLocator().listAssets("/multiple/1.0.0");
 
         assertThat(assets, hasItems(fullPathPrefix + "multiple.js", fullPathPrefix + "module/multiple_module.js"));
+        assets.add(fullPathPrefix + "other.js");
+        assertTrue(assets.contains(fullPathPrefix + "other.js"));
+    }
+
+    @Test
+    public void should_list_assets_in_folder_as_immutable_view() {
+        String fullPathPrefix = "META-INF/resources/webjars/multiple/2.0.0/";
+        Set<String> assets = new WebJarAssetLocator().listAssetsView("/multiple/2.0.0");
+
+        assertEquals(2, assets.size());
+        assertTrue(assets.contains(fullPathPrefix + "multiple.js"));
+        assertFalse(assets.contains("META-INF/resources/webjars/multiple/1.0.0/multiple.js"));
+        assertEquals(fullPathPrefix + "module/multiple_module.js", assets.iterator().next());
+        try {
+            assets.add(fullPathPrefix + "other.js");
+            fail("Exception should have been thrown!");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertTrue(new WebJarAssetLocator().listAssetsView("/unknown").isEmpty());
+    }
+
+    @Test
+    public void parallel_scan_should_produce_the_same_index_as_sequential_scan() {
+        ClassLoader classLoader = WebJarAssetLocator.class.getClassLoader();
+        Pattern filterExpr = Pattern.compile(".*\\.js");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            SortedMap<String, String> parallelIndex = WebJarAssetLocator.getFullPathIndex(filterExpr, executor, classLoader);
+            assertEquals(WebJarAssetLocator.getFullPathIndex(filterExpr, classLoader), parallelIndex);
+            assertEquals("META-INF/resources/webjars/jquery/1.8.3/jquery.js",
+                    new WebJarAssetLocator(parallelIndex).getFullPath("jquery.js"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void get_full_path_should_not_allocate() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported() && threadMXBean.isThreadAllocatedMemoryEnabled());
+
+        WebJarAssetLocator locator = new WebJarAssetLocator();
+        String[] partialPaths = {"jquery.js", "/2.0.0/module/multiple_module.js", "css/bootstrap.css", "space space.js"};
+        for (int i = 0; i < 10000; ++i) {
+            locator.getFullPath(partialPaths[i % partialPaths.length]);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 10000; ++i) {
+            locator.getFullPath(partialPaths[i % partialPaths.length]);
+        }
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        // Leave some room for the allocations of the measurement itself.
+        assertTrue("10000 lookups allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    @Test
+    public void refresh_should_swap_in_a_new_index() throws Exception {
+        ClassLoader classLoader = WebJarAssetLocator.class.getClassLoader();
+        WebJarAssetLocator locator = new WebJarAssetLocator(Pattern.compile(".*\\.js"), classLoader);
+        assertTrue(locator.findFullPath("jquery.js").isFound());
+        assertFalse(locator.findFullPath("bootstrap.css").isFound());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            locator.refresh(executor, Pattern.compile(".*\\.css"), classLoader).get();
+            assertFalse(locator.findFullPath("jquery.js").isFound());
+            assertEquals("META-INF/resources/webjars/bootstrap/2.2.2/css/bootstrap.css",
+                    locator.getFullPath("bootstrap.css"));
+
+            // Later refreshes scan the same class loaders.
+            locator.refresh(executor).get();
+            assertFalse(locator.findFullPath("jquery.js").isFound());
+            assertTrue(locator.findFullPath("bootstrap.css").isFound());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void refresh_should_keep_updates_and_drop_superseded_results() throws Exception {
+        ClassLoader classLoader = WebJarAssetLocator.class.getClassLoader();
+        WebJarAssetLocator locator = new WebJarAssetLocator(Pattern.compile(".*\\.js"), classLoader);
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        ExecutorService executor = new AbstractExecutorService() {
+            @Override
+            public void execute(Runnable task) {
+                tasks.add(task);
+            }
+
+            @Override
+            public void shutdown() {
+            }
+
+            @Override
+            public List<Runnable> shutdownNow() {
+                return tasks;
+            }
+
+            @Override
+            public boolean isShutdown() {
+                return false;
+            }
+
+            @Override
+            public boolean isTerminated() {
+                return false;
+            }
+
+            @Override
+            public boolean awaitTermination(long timeout, TimeUnit unit) {
+                return true;
+            }
+        };
+
+        locator.refresh(executor, Pattern.compile(".*\\.css"), classLoader);
+        locator.refresh(executor);
+        locator.update(Collections.singleton("META-INF/resources/webjars/added/1.0.0/added.js"),
+                Collections.<String>emptySet());
+        // The later refresh completes first, the earlier one is superseded then.
+        tasks.get(1).run();
+        tasks.get(0).run();
+        assertTrue(locator.findFullPath("jquery.js").isFound());
+        assertFalse(locator.findFullPath("bootstrap.css").isFound());
+        assertTrue(locator.findFullPath("added.js").isFound());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void refresh_should_fail_for_a_locator_given_its_index() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            new WebJarAssetLocator(new WebJarAssetLocator().getFullPathIndex()).refresh(executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void full_path_index_should_be_unmodifiable() {
+        new WebJarAssetLocator().getFullPathIndex().clear();
+    }
+
+    @Test
+    public void lazy_locator_should_only_index_webjars_that_are_looked_up() {
+        WebJarAssetLocator locator = WebJarAssetLocator.lazy(Pattern.compile(".*"), WebJarAssetLocator.class.getClassLoader());
+
+        assertEquals("META-INF/resources/webjars/jquery/1.8.3/jquery.js", locator.getFullPath("jquery", "jquery.js"));
+        assertEquals(2, locator.listWebJarAssets("foo").size());
+        assertTrue(locator.listWebJarAssets("unknown").isEmpty());
+        assertNull(locator.index.get());
+
+        assertEquals("META-INF/resources/webjars/bootstrap/2.2.2/css/bootstrap.css", locator.getFullPath("bootstrap.css"));
+        assertEquals(new WebJarAssetLocator().getFullPathIndex(), locator.getFullPathIndex());
+        // Scoped lookups use the whole index, once there is one.
+        assertEquals("META-INF/resources/webjars/jquery/1.8.3/jquery.js", locator.getFullPath("jquery", "jquery.js"));
+        assertEquals(locator.index.get().webJarAssetPaths("foo"), locator.listWebJarAssets("foo"));
+    }
+
+    @Test
+    public void locators_of_the_same_class_loader_should_share_their_index() {
+        ClassLoader classLoader = WebJarAssetLocator.class.getClassLoader();
+        WebJarAssetLocator locator = new WebJarAssetLocator();
+
+        assertSame(locator.index.get(), new WebJarAssetLocator().index.get());
+        assertSame(locator.index.get(), new WebJarAssetLocator(Pattern.compile(".*"), classLoader).index.get());
+        assertNotSame(locator.index.get(), new WebJarAssetLocator(Pattern.compile(".*\\.js"), classLoader).index.get());
+    }
+
+    @Test
+    public void warming_up_locator_should_probe_the_class_loaders_until_its_index_is_ready() {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable task) {
+                tasks.add(task);
+            }
+        };
+        WebJarAssetLocator locator = WebJarAssetLocator.warmUp(executor, 0, TimeUnit.SECONDS, Pattern.compile(".*"),
+                WebJarAssetLocator.class.getClassLoader());
+
+        assertFalse(locator.ready().toCompletableFuture().isDone());
+        locator.ready().toCompletableFuture().complete(null);
+        assertFalse(locator.ready().toCompletableFuture().isDone());
+        assertEquals("META-INF/resources/webjars/jquery/1.8.3/jquery.js", locator.getFullPath("jquery/1.8.3/jquery.js"));
+        assertEquals("META-INF/resources/webjars/jquery/1.8.3/jquery.js", locator.getFullPath("jquery", "/1.8.3/jquery.js"));
+        assertEquals(WebJarAssetLocator.LookupResult.Status.FOUND, locator.findFullPath("jquery/1.8.3/jquery.js").getStatus());
+        try {
+            locator.getFullPath("jquery.js");
+            fail("Index should not be ready");
+        } catch (IllegalStateException e) {
+            assertEquals("The index of the locator is not ready yet", e.getMessage());
+        }
+        try {
+            locator.getFullPath("jquery/1.8.3");
+            fail("Directories should not be probed");
+        } catch (IllegalStateException e) {
+            assertEquals("The index of the locator is not ready yet", e.getMessage());
+        }
+
+        for (Runnable task : tasks) {
+            task.run();
+        }
+        assertTrue(locator.ready().toCompletableFuture().isDone());
+        assertEquals("META-INF/resources/webjars/jquery/1.8.3/jquery.js", locator.getFullPath("jquery.js"));
+    }
+
+    @Test
+    public void warming_up_locator_should_wait_for_its_index() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            WebJarAssetLocator locator = WebJarAssetLocator.warmUp(executor, 1, TimeUnit.MINUTES, Pattern.compile(".*"),
+                    WebJarAssetLocator.class.getClassLoader());
+
+            assertEquals("META-INF/resources/webjars/bootstrap/2.2.2/css/bootstrap.css", locator.getFullPath("bootstrap.css"));
+            assertSame(locator, locator.ready().toCompletableFuture().get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void should_only_index_the_allowed_webjars() {
+        ClassLoader classLoader = WebJarAssetLocator.class.getClassLoader();
+        SortedMap<String, String> index = WebJarAssetLocator.getFullPathIndex(Arrays.asList("jquery", "bootstrap", "unknown"),
+                Pattern.compile(".*"), classLoader);
+
+        assertFalse(index.isEmpty());
+        for (String fullPath : new WebJarAssetLocator().getFullPathIndex().values()) {
+            boolean allowed = fullPath.startsWith("META-INF/resources/webjars/jquery/")
+                    || fullPath.startsWith("META-INF/resources/webjars/bootstrap/");
+            assertEquals(fullPath, allowed, index.containsValue(fullPath));
+        }
+
+        WebJarAssetLocator locator = new WebJarAssetLocator(Arrays.asList("jquery"), Pattern.compile(".*"), classLoader);
+        assertEquals("META-INF/resources/webjars/jquery/1.8.3/jquery.js", locator.getFullPath("jquery.js"));
+        assertTrue(locator.listWebJarAssets("bootstrap").isEmpty());
     }
 }
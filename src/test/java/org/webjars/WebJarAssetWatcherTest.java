@@ -0,0 +1,178 @@
+package org.webjars;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+import static org.webjars.WebJarAssetLocator.WEBJARS_PATH_PREFIX;
+
+public class WebJarAssetWatcherTest {
+
+	private static final Pattern ALL = Pattern.compile(".*");
+
+	@Rule
+	public final TemporaryFolder tmp = new TemporaryFolder();
+
+	private WebJarAssetWatcher watcher;
+
+	@Test
+	public void watcherShouldApplyCreatedAndDeletedFiles() throws Exception {
+		File existing = createFile(WEBJARS_PATH_PREFIX + "/live/1.0.0/existing.js");
+		ClassLoader classLoader = createClassLoader();
+		WebJarAssetLocator locator = new WebJarAssetLocator(WebJarAssetLocator.getFullPathIndex(ALL, classLoader));
+		watcher = new WebJarAssetWatcher(locator, ALL, classLoader);
+		watcher.start();
+
+		createFile(WEBJARS_PATH_PREFIX + "/live/1.0.0/created.js");
+		awaitFound(locator, "created.js", true);
+		assertEquals(WEBJARS_PATH_PREFIX + "/live/1.0.0/created.js", locator.getFullPath("created.js"));
+
+		existing.delete();
+		awaitFound(locator, "existing.js", false);
+	}
+
+	@Test
+	public void watcherShouldApplyCreatedAndDeletedDirectories() throws Exception {
+		createFile(WEBJARS_PATH_PREFIX + "/live/1.0.0/existing.js");
+		ClassLoader classLoader = createClassLoader();
+		WebJarAssetLocator locator = new WebJarAssetLocator(WebJarAssetLocator.getFullPathIndex(ALL, classLoader));
+		watcher = new WebJarAssetWatcher(locator, ALL, classLoader);
+		watcher.start();
+
+		createFile(WEBJARS_PATH_PREFIX + "/live/2.0.0/js/created.js");
+		awaitFound(locator, "2.0.0/js/created.js", true);
+		assertEquals(2, locator.listWebJarAssets("live").size());
+
+		TestFiles.deleteDir(new File(tmp.getRoot(), WEBJARS_PATH_PREFIX + "/live/2.0.0"));
+		awaitFound(locator, "2.0.0/js/created.js", false);
+		assertEquals(1, locator.listWebJarAssets("live").size());
+	}
+
+	@Test
+	public void watcherShouldRemoveFilesDeletedBeforeItStarted() throws Exception {
+		File deleted = createFile(WEBJARS_PATH_PREFIX + "/live/1.0.0/deleted.js");
+		createFile(WEBJARS_PATH_PREFIX + "/live/1.0.0/kept.js");
+		ClassLoader classLoader = createClassLoader();
+		WebJarAssetLocator locator = new WebJarAssetLocator(WebJarAssetLocator.getFullPathIndex(ALL, classLoader));
+		assertTrue(locator.findFullPath("deleted.js").isFound());
+		deleted.delete();
+
+		watcher = new WebJarAssetWatcher(locator, ALL, classLoader);
+		watcher.start();
+		assertFalse(locator.findFullPath("deleted.js").isFound());
+		assertTrue(locator.findFullPath("kept.js").isFound());
+	}
+
+	@Test
+	public void watcherShouldFollowSymbolicLinks() throws Exception {
+		File target = tmp.newFolder("target", "1.0.0").getParentFile();
+		File classes = tmp.newFolder("classes");
+		new File(classes, WEBJARS_PATH_PREFIX).mkdirs();
+		Files.createSymbolicLink(new File(classes, WEBJARS_PATH_PREFIX + "/linked").toPath(), target.toPath());
+		ClassLoader classLoader = new URLClassLoader(new URL[] {classes.toURI().toURL()}, null);
+		WebJarAssetLocator locator = new WebJarAssetLocator(WebJarAssetLocator.getFullPathIndex(ALL, classLoader));
+		watcher = new WebJarAssetWatcher(locator, ALL, classLoader);
+		watcher.start();
+
+		Writer writer = new FileWriter(new File(target, "1.0.0/linked.js"));
+		writer.close();
+		awaitFound(locator, "linked.js", true);
+		assertEquals(WEBJARS_PATH_PREFIX + "/linked/1.0.0/linked.js", locator.getFullPath("linked.js"));
+	}
+
+	@Test
+	public void watcherShouldKeepFilesFoundInAnotherDirectory() throws Exception {
+		File first = tmp.newFolder("first");
+		File second = tmp.newFolder("second");
+		File deleted = TestFiles.createFile(first, WEBJARS_PATH_PREFIX + "/live/1.0.0/shared.js");
+		TestFiles.createFile(second, WEBJARS_PATH_PREFIX + "/live/1.0.0/shared.js");
+		File marker = TestFiles.createFile(first, WEBJARS_PATH_PREFIX + "/live/1.0.0/marker.js");
+		ClassLoader classLoader = new URLClassLoader(new URL[] {first.toURI().toURL(), second.toURI().toURL()}, null);
+		WebJarAssetLocator locator = new WebJarAssetLocator(WebJarAssetLocator.getFullPathIndex(ALL, classLoader));
+		watcher = new WebJarAssetWatcher(locator, ALL, classLoader);
+		watcher.start();
+
+		deleted.delete();
+		marker.delete();
+		awaitFound(locator, "marker.js", false);
+		assertTrue(locator.findFullPath("shared.js").isFound());
+	}
+
+	@Test
+	public void watcherShouldKeepFilesFoundInAJar() throws Exception {
+		File classes = tmp.newFolder("classes");
+		File deleted = TestFiles.createFile(classes, WEBJARS_PATH_PREFIX + "/live/1.0.0/shared.js");
+		File jar = TestFiles.createJar(new File(tmp.getRoot(), "live.jar"), classes);
+		File marker = TestFiles.createFile(classes, WEBJARS_PATH_PREFIX + "/live/1.0.0/marker.js");
+		ClassLoader classLoader = new URLClassLoader(new URL[] {classes.toURI().toURL(), jar.toURI().toURL()}, null);
+		WebJarAssetLocator locator = new WebJarAssetLocator(WebJarAssetLocator.getFullPathIndex(ALL, classLoader));
+		watcher = new WebJarAssetWatcher(locator, ALL, classLoader);
+		watcher.start();
+
+		deleted.delete();
+		marker.delete();
+		awaitFound(locator, "marker.js", false);
+		assertTrue(locator.findFullPath("shared.js").isFound());
+	}
+
+	@Test
+	public void watcherShouldKeepWatchingWhenAnUpdateFails() throws Exception {
+		createFile(WEBJARS_PATH_PREFIX + "/live/1.0.0/existing.js");
+		ClassLoader classLoader = createClassLoader();
+		WebJarAssetLocator locator = new WebJarAssetLocator(WebJarAssetLocator.getFullPathIndex(ALL, classLoader)) {
+			private int updates;
+
+			@Override
+			void update(Collection<String> added, Collection<String> removed) {
+				// The first update is the one of starting the watcher.
+				if (++updates == 2) {
+					throw new IllegalStateException("Failing update");
+				}
+				super.update(added, removed);
+			}
+		};
+		watcher = new WebJarAssetWatcher(locator, ALL, classLoader);
+		watcher.start();
+
+		createFile(WEBJARS_PATH_PREFIX + "/live/1.0.0/failed.js");
+		Thread.sleep(500);
+		createFile(WEBJARS_PATH_PREFIX + "/live/1.0.0/created.js");
+		awaitFound(locator, "created.js", true);
+	}
+
+	private void awaitFound(WebJarAssetLocator locator, String partialPath, boolean found) throws Exception {
+		long deadline = System.currentTimeMillis() + 30000;
+		while (locator.findFullPath(partialPath).isFound() != found) {
+			if (System.currentTimeMillis() > deadline) {
+				fail(partialPath + (found ? " has not been added" : " has not been removed"));
+			}
+			Thread.sleep(10);
+		}
+	}
+
+	private ClassLoader createClassLoader() throws Exception {
+		return new URLClassLoader(new URL[] {tmp.getRoot().toURI().toURL()}, null);
+	}
+
+	private File createFile(String path) throws Exception {
+		return TestFiles.createFile(tmp.getRoot(), path);
+	}
+
+	@After
+	public void closeWatcher() throws Exception {
+		if (watcher != null) {
+			watcher.close();
+		}
+	}
+}
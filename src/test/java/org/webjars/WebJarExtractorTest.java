@@ -13,6 +13,8 @@ import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.webjars.WebJarExtractor.*;
 
@@ -124,6 +126,97 @@ public class WebJarExtractorTest {
 		verify(mockCache, never()).put(eq("jquery/jquery.js"), any(Cacheable.class));
 	}
 
+	@Test
+	public void allWebJarsShouldBeExtractableConcurrently() throws Exception {
+		new WebJarExtractor(createClassLoader()).extractAllWebJarsTo(createTmpDir());
+		List<File> sequential = getAllFiles(tmpDir);
+		File sequentialDir = tmpDir;
+		tmpDir = null;
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			new WebJarExtractor(new MemoryCache(), createClassLoader()).extractAllWebJarsTo(createTmpDir(), executor);
+			List<File> concurrent = getAllFiles(tmpDir);
+			assertEquals(sequential.size(), concurrent.size());
+			for (File file : sequential) {
+				File copy = new File(tmpDir, file.getPath().substring(sequentialDir.getPath().length()));
+				assertFileExists(copy);
+				assertEquals(file.length(), copy.length());
+			}
+		} finally {
+			executor.shutdown();
+			deleteDir(sequentialDir);
+		}
+	}
+
+	@Test
+	public void extractionShouldReportWhatItDid() throws Exception {
+		WebJarExtractor extractor = new WebJarExtractor(new MemoryCache(), createClassLoader());
+		Report first = extractor.extractWebJarTo("bootstrap", createTmpDir(), null);
+		assertTrue(first.getFilesWritten() > 0);
+		assertEquals(0, first.getFilesUpToDate());
+		assertTrue(first.getDirectoriesCreated() > 0);
+
+		File file = new File(tmpDir, "js/bootstrap.js");
+		assertTrue(file.delete());
+		Report second = extractor.extractWebJarTo("bootstrap", tmpDir, null);
+		assertEquals(1, second.getFilesWritten());
+		assertEquals(first.getFilesWritten() - 1, second.getFilesUpToDate());
+		assertEquals(0, second.getDirectoriesCreated());
+		assertEquals(0, second.getArchivesSkipped());
+		assertFileExists(file);
+	}
+
+	@Test
+	public void directoriesShouldReplaceFilesInTheirWay() throws Exception {
+		File webJars = File.createTempFile("webjarextractortest-", "");
+		assertTrue(webJars.delete());
+		try {
+			File first = new File(webJars, "first");
+			File second = new File(webJars, "second");
+			writeFile(new File(first, WEBJARS_PATH_PREFIX + "/a/1.0/foo"));
+			writeFile(new File(second, WEBJARS_PATH_PREFIX + "/b/1.0/foo/bar/x.js"));
+			URLClassLoader classLoader = new URLClassLoader(new URL[] {first.toURI().toURL(), second.toURI().toURL()},
+					null);
+			WebJarExtractor extractor = new WebJarExtractor(new MemoryCache(), classLoader);
+
+			Report report = extractor.extractAllWebJarsTo(createTmpDir(), null);
+			assertEquals(1, report.getFilesWritten());
+			assertEquals(1, report.getFilesShadowed());
+			assertEquals(2, report.getDirectoriesCreated());
+			assertFileExists(new File(tmpDir, "foo/bar/x.js"));
+
+			// A file left in the way by an earlier extraction is deleted.
+			assertTrue(new File(tmpDir, "foo/bar/x.js").delete());
+			assertTrue(new File(tmpDir, "foo/bar").delete());
+			assertTrue(new File(tmpDir, "foo").delete());
+			writeFile(new File(tmpDir, "foo"));
+			report = extractor.extractAllWebJarsTo(tmpDir, null);
+			assertEquals(1, report.getFilesWritten());
+			assertEquals(2, report.getDirectoriesCreated());
+			assertFileExists(new File(tmpDir, "foo/bar/x.js"));
+		} finally {
+			deleteDir(webJars);
+		}
+	}
+
+	@Test
+	public void unchangedJarFilesShouldBeSkipped() throws Exception {
+		WebJarExtractor extractor = new WebJarExtractor(new MemoryCache(), createClassLoader(), true);
+		Report first = extractor.extractAllWebJarsTo(createTmpDir(), null);
+		assertEquals(0, first.getArchivesSkipped());
+		List<File> extracted = getAllFiles(tmpDir);
+
+		Report second = extractor.extractAllWebJarsTo(tmpDir, null);
+		assertTrue(second.getArchivesSkipped() > 0);
+		assertEquals(0, second.getFilesWritten());
+		assertEquals(extracted, getAllFiles(tmpDir));
+
+		// What is extracted is part of the fingerprint.
+		Report other = extractor.extractWebJarTo("jquery", tmpDir, null);
+		assertEquals(0, other.getArchivesSkipped());
+	}
+
     @Test
     public void extractAllNodeModulesToShouldExtractOnlyTheModules() throws Exception {
         WebJarExtractor extractor = new WebJarExtractor(createClassLoader());
@@ -202,6 +295,16 @@ public class WebJarExtractorTest {
 		}
 	}
 
+	private void writeFile(File file) throws IOException {
+		file.getParentFile().mkdirs();
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(file.getName().getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+	}
+
 	private void assertFileExists(File file) {
 		try {
 			assertTrue("File " + file + " doesn't exist", file.exists());
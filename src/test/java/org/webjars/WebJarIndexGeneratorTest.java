@@ -0,0 +1,93 @@
+package org.webjars;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.SortedMap;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+import static org.webjars.WebJarAssetLocator.WEBJARS_INDEX_PATH;
+import static org.webjars.WebJarAssetLocator.WEBJARS_PATH_PREFIX;
+
+public class WebJarIndexGeneratorTest {
+
+	@Rule
+	public final TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void generateShouldListAllResources() throws Exception {
+		createFile(WEBJARS_PATH_PREFIX + "/indexed/1.0.0/indexed.js");
+		createFile(WEBJARS_PATH_PREFIX + "/indexed/1.0.0/css/indexed.css");
+
+		assertEquals(2, WebJarIndexGenerator.generate(tmp.getRoot()).size());
+		assertTrue(new File(tmp.getRoot(), WEBJARS_INDEX_PATH).isFile());
+	}
+
+	@Test
+	public void generateShouldRequireADirectory() throws Exception {
+		try {
+			WebJarIndexGenerator.generate(new String[0]);
+			fail("No directory was given");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().startsWith("Usage: "));
+		}
+	}
+
+	@Test
+	public void locatorShouldUseIndexInsteadOfScanning() throws Exception {
+		createFile(WEBJARS_PATH_PREFIX + "/indexed/1.0.0/indexed.js");
+		WebJarIndexGenerator.generate(tmp.getRoot());
+		createFile(WEBJARS_PATH_PREFIX + "/indexed/1.0.0/unindexed.js");
+
+		SortedMap<String, String> index = WebJarAssetLocator.getFullPathIndex(Pattern.compile(".*"), createJarClassLoader());
+
+		assertEquals(1, index.size());
+		assertEquals(WEBJARS_PATH_PREFIX + "/indexed/1.0.0/indexed.js", index.get("indexed.js/1.0.0/indexed/webjars/resources/META-INF"));
+	}
+
+	@Test
+	public void locatorShouldListDirectoriesDespiteTheirIndex() throws Exception {
+		createFile(WEBJARS_PATH_PREFIX + "/indexed/1.0.0/indexed.js");
+		WebJarIndexGenerator.generate(tmp.getRoot());
+		createFile(WEBJARS_PATH_PREFIX + "/indexed/1.0.0/unindexed.js");
+
+		SortedMap<String, String> index = WebJarAssetLocator.getFullPathIndex(Pattern.compile(".*"), createClassLoader());
+
+		assertEquals(2, index.size());
+		assertEquals(WEBJARS_PATH_PREFIX + "/indexed/1.0.0/unindexed.js", index.get("unindexed.js/1.0.0/indexed/webjars/resources/META-INF"));
+	}
+
+	@Test
+	public void locatorShouldFilterIndexedResources() throws Exception {
+		createFile(WEBJARS_PATH_PREFIX + "/indexed/1.0.0/indexed.js");
+		createFile(WEBJARS_PATH_PREFIX + "/indexed/1.0.0/css/indexed.css");
+		WebJarIndexGenerator.generate(tmp.getRoot());
+
+		WebJarAssetLocator locator = new WebJarAssetLocator(
+				WebJarAssetLocator.getFullPathIndex(Pattern.compile(".*\\.css"), createJarClassLoader()));
+
+		assertEquals(WEBJARS_PATH_PREFIX + "/indexed/1.0.0/css/indexed.css", locator.getFullPath("indexed.css"));
+		assertEquals(1, locator.getFullPathIndex().size());
+	}
+
+	private ClassLoader createClassLoader() throws Exception {
+		return new URLClassLoader(new URL[] {tmp.getRoot().toURI().toURL()}, null);
+	}
+
+	/*
+	 * Package the temporary directory into a jar file within it, as the index of a directory is not used.
+	 */
+	private ClassLoader createJarClassLoader() throws Exception {
+		File jar = TestFiles.createJar(new File(tmp.getRoot(), "indexed.jar"), tmp.getRoot());
+		return new URLClassLoader(new URL[] {jar.toURI().toURL()}, null);
+	}
+
+	private File createFile(String path) throws Exception {
+		return TestFiles.createFile(tmp.getRoot(), path);
+	}
+}
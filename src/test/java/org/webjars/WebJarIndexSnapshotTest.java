@@ -0,0 +1,119 @@
+package org.webjars;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+import static org.webjars.WebJarAssetLocator.WEBJARS_PATH_PREFIX;
+
+public class WebJarIndexSnapshotTest {
+
+	private static final Pattern ALL = Pattern.compile(".*");
+
+	private File tmpFile;
+	private File jarFile;
+
+	@Test
+	public void snapshotShouldPersistScannedJars() throws Exception {
+		createJar("snap.js");
+		WebJarIndexSnapshot snapshot = new WebJarIndexSnapshot(createTmpFile());
+		SortedMap<String, String> index = WebJarAssetLocator.getFullPathIndex(ALL, null, snapshot, createClassLoader());
+		snapshot.save();
+
+		snapshot = new WebJarIndexSnapshot(tmpFile);
+		assertEquals(Collections.singleton(WEBJARS_PATH_PREFIX + "/snap/1.0.0/snap.js"), snapshot.get(jarFile, ALL));
+		assertEquals(index, WebJarAssetLocator.getFullPathIndex(ALL, null, snapshot, createClassLoader()));
+	}
+
+	@Test
+	public void snapshotShouldNotServeChangedJars() throws Exception {
+		createJar("snap.js");
+		WebJarIndexSnapshot snapshot = new WebJarIndexSnapshot(createTmpFile());
+		WebJarAssetLocator.getFullPathIndex(ALL, null, snapshot, createClassLoader());
+		snapshot.save();
+
+		createJar("snap.js", "other.js");
+		snapshot = new WebJarIndexSnapshot(tmpFile);
+		assertNull(snapshot.get(jarFile, ALL));
+		assertEquals(2, WebJarAssetLocator.getFullPathIndex(ALL, null, snapshot, createClassLoader()).size());
+	}
+
+	@Test
+	public void snapshotShouldNotServeOtherFilters() throws Exception {
+		createJar("snap.js");
+		WebJarIndexSnapshot snapshot = new WebJarIndexSnapshot(createTmpFile());
+		WebJarAssetLocator.getFullPathIndex(ALL, null, snapshot, createClassLoader());
+		snapshot.save();
+
+		snapshot = new WebJarIndexSnapshot(tmpFile);
+		assertNull(snapshot.get(jarFile, Pattern.compile(".*\\.css")));
+		assertNull(snapshot.get(jarFile, Pattern.compile(".*", Pattern.CASE_INSENSITIVE)));
+	}
+
+	@Test
+	public void snapshotShouldKeepFiltersOnOneLine() throws Exception {
+		createJar("snap.js");
+		Pattern filter = Pattern.compile(".*\n?|\\\\n");
+		WebJarIndexSnapshot snapshot = new WebJarIndexSnapshot(createTmpFile());
+		WebJarAssetLocator.getFullPathIndex(filter, null, snapshot, createClassLoader());
+		snapshot.save();
+
+		snapshot = new WebJarIndexSnapshot(tmpFile);
+		assertNotNull(snapshot.get(jarFile, filter));
+		assertNull(snapshot.get(jarFile, ALL));
+	}
+
+	private ClassLoader createClassLoader() throws Exception {
+		return new URLClassLoader(new URL[] {jarFile.toURI().toURL()}, null);
+	}
+
+	private void createJar(String... names) throws Exception {
+		if (jarFile == null) {
+			jarFile = File.createTempFile("webjarindexsnapshottest-", ".jar");
+		}
+		JarOutputStream jar = new JarOutputStream(new FileOutputStream(jarFile));
+		try {
+			for (String directory : new String[] {"META-INF/", "META-INF/resources/", WEBJARS_PATH_PREFIX + "/",
+					WEBJARS_PATH_PREFIX + "/snap/", WEBJARS_PATH_PREFIX + "/snap/1.0.0/"}) {
+				jar.putNextEntry(new ZipEntry(directory));
+				jar.closeEntry();
+			}
+			for (String name : names) {
+				jar.putNextEntry(new ZipEntry(WEBJARS_PATH_PREFIX + "/snap/1.0.0/" + name));
+				jar.write(name.getBytes("UTF-8"));
+				jar.closeEntry();
+			}
+		} finally {
+			jar.close();
+		}
+		// Make sure the modification is visible even on file systems with a coarse timestamp resolution.
+		jarFile.setLastModified(jarFile.lastModified() - 1000 * names.length);
+	}
+
+	private File createTmpFile() throws Exception {
+		if (tmpFile == null) {
+			tmpFile = File.createTempFile("webjarindexsnapshot-", ".snapshot");
+		}
+		return tmpFile;
+	}
+
+	@After
+	public void deleteTmpFiles() {
+		if (tmpFile != null) {
+			tmpFile.delete();
+		}
+		if (jarFile != null) {
+			jarFile.delete();
+		}
+	}
+}
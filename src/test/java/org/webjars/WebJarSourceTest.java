@@ -0,0 +1,115 @@
+package org.webjars;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+import static org.webjars.WebJarAssetLocator.WEBJARS_PATH_PREFIX;
+
+public class WebJarSourceTest {
+
+	@Rule
+	public final TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void keyShouldNotDependOnTheSpellingOfTheUrl() throws Exception {
+		File dir = tmp.getRoot();
+		URL url = dir.toURI().toURL();
+		URL otherUrl = new URL("file:" + new File(dir, "sub/..").getPath() + "/");
+
+		assertEquals(WebJarSource.key(url), WebJarSource.key(otherUrl));
+		assertEquals(WebJarSource.key(new URL("jar:" + url + "x.jar!/" + WEBJARS_PATH_PREFIX)),
+				WebJarSource.key(new URL("jar:" + otherUrl + "x.jar!/" + WEBJARS_PATH_PREFIX + "/")));
+	}
+
+	@Test
+	public void listShouldFindSourcesSharedByClassLoadersOnce() throws Exception {
+		createFile(WEBJARS_PATH_PREFIX + "/shared/1.0.0/shared.js");
+		URL[] urls = {tmp.getRoot().toURI().toURL()};
+		ClassLoader parent = new URLClassLoader(urls, null);
+		ClassLoader child = new URLClassLoader(urls, parent);
+
+		List<WebJarSource> sources = WebJarSource.list(new ClassLoader[] {parent, child});
+
+		assertEquals(1, sources.size());
+		assertEquals(1, WebJarAssetLocator.getFullPathIndex(Pattern.compile(".*"), parent, child).size());
+	}
+
+	@Test
+	public void sharedIndexShouldSeeChangesOfDirectories() throws Exception {
+		File existing = createFile(WEBJARS_PATH_PREFIX + "/dev/1.0.0/existing.js");
+		ClassLoader classLoader = new URLClassLoader(new URL[] {tmp.getRoot().toURI().toURL()}, null);
+		Pattern all = Pattern.compile(".*");
+		WebJarAssetLocator locator = new WebJarAssetLocator(all, classLoader);
+		assertSame(locator.index.get(), new WebJarAssetLocator(all, classLoader).index.get());
+
+		createFile(WEBJARS_PATH_PREFIX + "/dev/1.0.0/created.js");
+		existing.delete();
+		WebJarAssetLocator changed = new WebJarAssetLocator(all, classLoader);
+		assertTrue(changed.findFullPath("created.js").isFound());
+		assertFalse(changed.findFullPath("existing.js").isFound());
+
+		WebJarAssetLocator.invalidateCache(classLoader);
+		assertNotSame(changed.index.get(), new WebJarAssetLocator(all, classLoader).index.get());
+	}
+
+	@Test
+	public void sharedIndexShouldKeepResourcesOfJarsDeletedFromDirectories() throws Exception {
+		File classes = tmp.newFolder("classes");
+		File deleted = TestFiles.createFile(classes, WEBJARS_PATH_PREFIX + "/dev/1.0.0/shared.js");
+		File jar = TestFiles.createJar(new File(tmp.getRoot(), "dev.jar"), classes);
+		File created = TestFiles.createFile(classes, WEBJARS_PATH_PREFIX + "/dev/1.0.0/created.js");
+		ClassLoader classLoader = new URLClassLoader(new URL[] {classes.toURI().toURL(), jar.toURI().toURL()}, null);
+		Pattern all = Pattern.compile(".*");
+		assertTrue(new WebJarAssetLocator(all, classLoader).findFullPath("created.js").isFound());
+
+		deleted.delete();
+		created.delete();
+		WebJarAssetLocator changed = new WebJarAssetLocator(all, classLoader);
+		assertTrue(changed.findFullPath("shared.js").isFound());
+		assertFalse(changed.findFullPath("created.js").isFound());
+	}
+
+	@Test
+	public void invalidateCacheShouldForgetEachClassLoader() throws Exception {
+		createFile(WEBJARS_PATH_PREFIX + "/dev/1.0.0/existing.js");
+		URL[] urls = {tmp.getRoot().toURI().toURL()};
+		ClassLoader first = new URLClassLoader(urls, null);
+		ClassLoader second = new URLClassLoader(urls, null);
+		Pattern all = Pattern.compile(".*");
+		AssetIndex firstIndex = new WebJarAssetLocator(all, first).index.get();
+		AssetIndex secondIndex = new WebJarAssetLocator(all, second).index.get();
+
+		WebJarAssetLocator.invalidateCache(first, second);
+		assertNotSame(firstIndex, new WebJarAssetLocator(all, first).index.get());
+		assertNotSame(secondIndex, new WebJarAssetLocator(all, second).index.get());
+	}
+
+	@Test
+	public void fullPathIndexShouldStopAtTheGivenDirectoryDepth() throws Exception {
+		createFile(WEBJARS_PATH_PREFIX + "/deep/1.0.0/shallow.js");
+		createFile(WEBJARS_PATH_PREFIX + "/deep/1.0.0/js/lib/deep.js");
+		ClassLoader classLoader = new URLClassLoader(new URL[] {tmp.getRoot().toURI().toURL()}, null);
+		Pattern all = Pattern.compile(".*");
+
+		assertEquals(1, WebJarAssetLocator.getFullPathIndex(all, 3, classLoader).size());
+		assertEquals(2, WebJarAssetLocator.getFullPathIndex(all, 5, classLoader).size());
+		assertEquals(2, WebJarAssetLocator.getFullPathIndex(all, classLoader).size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void fullPathIndexShouldRequireADirectoryDepth() throws Exception {
+		WebJarAssetLocator.getFullPathIndex(Pattern.compile(".*"), 0, getClass().getClassLoader());
+	}
+
+	private File createFile(String path) throws Exception {
+		return TestFiles.createFile(tmp.getRoot(), path);
+	}
+}